@@ -0,0 +1,33 @@
+package org.flood;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks with the JMH command line options and always with the GC profiler (-prof gc). The values of the
+ * algorithm parameter are the names of all the InitializationAlgorithms, unless they are given in the command line.
+ * <p/>
+ * The profiler reports gc.alloc.rate.norm, the bytes allocated per operation, so that changes in how many objects a
+ * click, a query or a repaint creates show up in every run.
+ */
+public final class BenchmarkRunner {
+
+    private BenchmarkRunner() {
+    }
+
+    public static void main(String[] arguments) throws CommandLineOptionException, RunnerException {
+        CommandLineOptions commandLineOptions = new CommandLineOptions(arguments);
+        ChainedOptionsBuilder builder = new OptionsBuilder().parent(commandLineOptions).addProfiler(GCProfiler.class);
+        // Every InitializationAlgorithm is benchmarked, unless some are chosen with -p algorithm=...
+        if (!commandLineOptions.getParameter(Benchmarks.ALGORITHM).hasValue()) {
+            builder.param(Benchmarks.ALGORITHM, Benchmarks.getInitializationAlgorithmNames());
+        }
+        new Runner(builder.build()).run();
+    }
+
+}
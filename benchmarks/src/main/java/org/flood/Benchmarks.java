@@ -0,0 +1,63 @@
+package org.flood;
+
+import org.flood.algorithms.InitializationAlgorithm;
+import org.flood.algorithms.InitializationAlgorithms;
+
+import java.util.List;
+
+/**
+ * Helper methods shared by the benchmarks.
+ * <p/>
+ * Every benchmark is parameterized over all the GameSizes and all the InitializationAlgorithms. As JMH parameters must
+ * be constants, the algorithms are given by name and their names are taken from InitializationAlgorithms by
+ * BenchmarkRunner when the benchmarks are run, so a new InitializationAlgorithm is benchmarked as soon as it is added.
+ */
+final class Benchmarks {
+
+    // All the boards are generated from the same seed, so that every run measures the same boards.
+    static final long SEED = 1;
+    // The name of the parameter with the name of the InitializationAlgorithm in every benchmark.
+    static final String ALGORITHM = "algorithm";
+
+    private Benchmarks() {
+    }
+
+    /**
+     * Returns the names of all the InitializationAlgorithms, the values of the algorithm parameter.
+     *
+     * @return an array of names
+     */
+    static String[] getInitializationAlgorithmNames() {
+        List<InitializationAlgorithm> initializationAlgorithms = InitializationAlgorithms.getInitializationAlgorithms();
+        String[] names = new String[initializationAlgorithms.size()];
+        for (int k = 0; k < names.length; k++) {
+            names[k] = initializationAlgorithms.get(k).toString();
+        }
+        return names;
+    }
+
+    /**
+     * Returns the InitializationAlgorithm with the specified name.
+     *
+     * @param name the name of an InitializationAlgorithm
+     * @return an InitializationAlgorithm
+     * @throws IllegalArgumentException if there is no InitializationAlgorithm with the specified name
+     */
+    static InitializationAlgorithm getInitializationAlgorithm(String name) {
+        InitializationAlgorithm initializationAlgorithm = InitializationAlgorithms.getInitializationAlgorithm(name);
+        if (initializationAlgorithm == null) {
+            throw new IllegalArgumentException("'" + name + "' is not an initialization algorithm.");
+        }
+        return initializationAlgorithm;
+    }
+
+    /**
+     * Creates and initializes a square TileMatrix of the specified GameSize.
+     */
+    static TileMatrix makeTileMatrix(GameSize gameSize, String algorithm) {
+        TileMatrix tileMatrix = new TileMatrix(gameSize.tilesPerRow, gameSize.tilesPerRow);
+        tileMatrix.initialize(getInitializationAlgorithm(algorithm), SEED);
+        return tileMatrix;
+    }
+
+}
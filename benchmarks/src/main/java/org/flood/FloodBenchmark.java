@@ -0,0 +1,90 @@
+package org.flood;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks TileMatrix.startFlood by playing whole games.
+ * <p/>
+ * Each invocation plays the same recorded game on a fresh copy of the board. The clicks are also counted, so that the
+ * results show both games and clicks per second.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class FloodBenchmark {
+
+    @Param
+    public GameSize gameSize;
+
+    // Given by BenchmarkRunner, one value for each InitializationAlgorithm.
+    @Param
+    public String algorithm;
+
+    private TileMatrix tileMatrix;
+    private GeneratedBoard board;
+    // The (i, j) pairs of the clicks of the recorded game.
+    private int[] clicks;
+
+    /**
+     * Records a game that always clicks the first beach, in row-major order, until everything is flooded.
+     */
+    @Setup(Level.Trial)
+    public void setUpTrial() {
+        tileMatrix = Benchmarks.makeTileMatrix(gameSize, algorithm);
+        board = tileMatrix.toGeneratedBoard();
+        int side = gameSize.tilesPerRow;
+        int[] recorded = new int[0];
+        int clickCount = 0;
+        while (tileMatrix.getWaterCount() != side * side) {
+            int index = 0;
+            while (tileMatrix.getTileType(index % side, index / side) != TileType.BEACH) {
+                index++;
+            }
+            if (2 * clickCount == recorded.length) {
+                recorded = Arrays.copyOf(recorded, Math.max(16, 2 * recorded.length));
+            }
+            recorded[2 * clickCount] = index % side;
+            recorded[2 * clickCount + 1] = index / side;
+            clickCount++;
+            tileMatrix.startFlood(index % side, index / side);
+        }
+        clicks = Arrays.copyOf(recorded, 2 * clickCount);
+    }
+
+    @Setup(Level.Invocation)
+    public void setUpInvocation() {
+        tileMatrix.load(board);
+    }
+
+    @Benchmark
+    public int playGame(ClickCounter counter) {
+        for (int k = 0; k < clicks.length; k += 2) {
+            tileMatrix.startFlood(clicks[k], clicks[k + 1]);
+        }
+        counter.clicks += clicks.length / 2;
+        return tileMatrix.getWaterCount();
+    }
+
+    /**
+     * Counts the clicks made by the benchmark, reported by JMH as a rate.
+     */
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    @State(Scope.Thread)
+    public static class ClickCounter {
+
+        public long clicks;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            clicks = 0;
+        }
+
+    }
+
+}
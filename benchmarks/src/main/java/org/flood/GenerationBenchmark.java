@@ -0,0 +1,55 @@
+package org.flood;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks starting a new game, both generating a new board and loading one from the BoardCache.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class GenerationBenchmark {
+
+    @Param
+    public GameSize gameSize;
+
+    // Given by BenchmarkRunner, one value for each InitializationAlgorithm.
+    @Param
+    public String algorithm;
+
+    private TileMatrix tileMatrix;
+    private FloodEngine engine;
+    private BoardCode boardCode;
+    private long seed;
+
+    @Setup(Level.Trial)
+    public void setUpTrial() {
+        tileMatrix = Benchmarks.makeTileMatrix(gameSize, algorithm);
+        engine = new FloodEngine(gameSize, Benchmarks.getInitializationAlgorithm(algorithm));
+        boardCode = engine.getBoardCode();
+    }
+
+    /**
+     * Generates a new board for every invocation, as a full reinitialize does.
+     */
+    @Benchmark
+    public int initialize() {
+        tileMatrix.initialize(Benchmarks.getInitializationAlgorithm(algorithm), seed++);
+        return tileMatrix.getWaterCount();
+    }
+
+    /**
+     * Starts the same board again, which is always found in the BoardCache.
+     */
+    @Benchmark
+    public int reinitializeCached() {
+        engine.reinitialize(boardCode);
+        return engine.getWaterCount();
+    }
+
+}
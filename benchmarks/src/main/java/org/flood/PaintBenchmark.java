@@ -0,0 +1,65 @@
+package org.flood;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks painting a whole GamePanel into a BufferedImage, without a display.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+@State(Scope.Thread)
+public class PaintBenchmark {
+
+    @Param
+    public GameSize gameSize;
+
+    // Given by BenchmarkRunner, one value for each InitializationAlgorithm.
+    @Param
+    public String algorithm;
+
+    private GamePanel panel;
+    private BufferedImage image;
+    private Graphics2D graphics;
+
+    @Setup(Level.Trial)
+    public void setUpTrial() throws InterruptedException {
+        // A Configuration without a Game, which is never notified as nothing is changed.
+        Configuration configuration = new Configuration(null) {
+            @Override
+            public GameSize getGameSize() {
+                return gameSize;
+            }
+        };
+        configuration.setInitializationAlgorithm(Benchmarks.getInitializationAlgorithm(algorithm));
+        panel = new GamePanel(configuration);
+        int side = gameSize.tilesPerRow * gameSize.tileSide;
+        panel.setSize(side, side + GameData.STATUS_BAR_HEIGHT);
+        panel.setFont(new Font(Font.SANS_SERIF, Font.PLAIN, 14));
+        int tilesPerRow = gameSize.tilesPerRow;
+        panel.reinitialize(new BoardCode(Benchmarks.SEED, configuration.getInitializationAlgorithm(), tilesPerRow,
+                tilesPerRow));
+        // The board is generated by the GameLogic of the panel, so it is only there once its changes are shown.
+        panel.awaitChanges();
+        image = new BufferedImage(panel.getWidth(), panel.getHeight(), BufferedImage.TYPE_INT_RGB);
+        graphics = image.createGraphics();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDownTrial() {
+        graphics.dispose();
+    }
+
+    @Benchmark
+    public BufferedImage paintComponent() {
+        panel.paintComponent(graphics);
+        return image;
+    }
+
+}
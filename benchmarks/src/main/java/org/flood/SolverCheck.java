@@ -0,0 +1,174 @@
+package org.flood;
+
+import org.flood.algorithms.InitializationAlgorithm;
+import org.flood.algorithms.InitializationAlgorithms;
+import org.flood.solver.Solution;
+import org.flood.solver.Solver;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Checks the Solver against a brute-force breadth-first search on small boards.
+ * <p/>
+ * The search does not share any code with the game: it keeps the water tiles of a board as the bits of a long and
+ * floods them by the rules of the game, so every board reachable by some clicks is visited and the number of clicks of
+ * the shortest solution is exact. For every board, the Solver must find a solution with that number of clicks, and its
+ * clicks must flood the board when they are made on a FloodEngine. The boards are generated by every
+ * InitializationAlgorithm and solved with one to four threads.
+ * <p/>
+ * Run it after changing the Solver, from the jar of the benchmarks, with
+ * <pre>
+ *     java -cp benchmarks/target/benchmarks.jar org.flood.SolverCheck [boards] [seed]
+ * </pre>
+ * It exits with a nonzero status if any board was solved wrongly.
+ */
+final class SolverCheck {
+
+    private static final int DEFAULT_BOARD_COUNT = 300;
+    private static final long DEFAULT_SEED = 7;
+    // A board of at most 6x6 tiles fits in a long, and has few enough reachable boards to visit them all.
+    private static final int MINIMUM_SIDE = 3;
+    private static final int MAXIMUM_SIDE = 6;
+    private static final int MAXIMUM_PARALLELISM = 4;
+
+    private final int width;
+    private final int height;
+
+    private SolverCheck(int width, int height) {
+        this.width = width;
+        this.height = height;
+    }
+
+    public static void main(String[] arguments) {
+        int boardCount = arguments.length > 0 ? Integer.parseInt(arguments[0]) : DEFAULT_BOARD_COUNT;
+        long seed = arguments.length > 1 ? Long.parseLong(arguments[1]) : DEFAULT_SEED;
+        Random random = new Random(seed);
+        List<InitializationAlgorithm> initializationAlgorithms = InitializationAlgorithms.getInitializationAlgorithms();
+        int failures = 0;
+        for (int board = 0; board < boardCount; board++) {
+            int width = MINIMUM_SIDE + random.nextInt(MAXIMUM_SIDE - MINIMUM_SIDE + 1);
+            int height = MINIMUM_SIDE + random.nextInt(MAXIMUM_SIDE - MINIMUM_SIDE + 1);
+            InitializationAlgorithm initializationAlgorithm =
+                    initializationAlgorithms.get(board % initializationAlgorithms.size());
+            int parallelism = 1 + board % MAXIMUM_PARALLELISM;
+            FloodEngine engine = new FloodEngine(width, height, initializationAlgorithm, board);
+            String failure = new SolverCheck(width, height).check(engine, parallelism);
+            if (failure != null) {
+                System.out.println(engine.getBoardCode() + " with " + parallelism + " threads: " + failure);
+                failures++;
+            }
+        }
+        System.out.println("Checked " + boardCount + " boards, " + failures + " were solved wrongly.");
+        if (failures != 0) {
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Solves a board with the Solver and with the search and plays the solution of the Solver.
+     *
+     * @return what was wrong or null if the board was solved correctly
+     */
+    private String check(FloodEngine engine, int parallelism) {
+        long water = 0;
+        for (int index = 0; index < width * height; index++) {
+            if (engine.getTileType(index % width, index / width) == TileType.WATER) {
+                water |= 1L << index;
+            }
+        }
+        Solution solution = new Solver(engine, parallelism).solve();
+        int clickCount = countClicks(water);
+        if (solution.getClickCount() != clickCount) {
+            return "the Solver found " + solution + ", but the shortest solution has " + clickCount + " clicks.";
+        }
+        for (int move = 0; move < solution.getClickCount(); move++) {
+            if (engine.startFlood(solution.getMoveI(move), solution.getMoveJ(move)) == null) {
+                return "click " + (move + 1) + " of " + solution + " floods nothing.";
+            }
+        }
+        if (!engine.isFlooded()) {
+            return "the clicks of " + solution + " do not flood the board.";
+        }
+        return null;
+    }
+
+    /**
+     * Returns the number of clicks of the shortest solution of a board, found by visiting every board reachable from it
+     * in order of clicks.
+     */
+    private int countClicks(long water) {
+        long flooded = width * height == Long.SIZE ? -1L : (1L << width * height) - 1;
+        Map<Long, Integer> clicks = new HashMap<Long, Integer>();
+        ArrayDeque<Long> queue = new ArrayDeque<Long>();
+        clicks.put(water, 0);
+        queue.add(water);
+        while (!queue.isEmpty()) {
+            long board = queue.poll();
+            int boardClicks = clicks.get(board);
+            if (board == flooded) {
+                return boardClicks;
+            }
+            for (int index = 0; index < width * height; index++) {
+                long next = flood(board, index);
+                if (next != board && !clicks.containsKey(next)) {
+                    clicks.put(next, boardClicks + 1);
+                    queue.add(next);
+                }
+            }
+        }
+        throw new IllegalStateException("No board reachable from the board is flooded.");
+    }
+
+    /**
+     * Returns the board after a click on a tile, which is the same board if the tile is not a beach.
+     * <p/>
+     * A beach is a land tile with water in any of the eight tiles around it. A click turns the beaches connected to the
+     * clicked beach through their sides into water.
+     */
+    private long flood(long water, int start) {
+        long beaches = 0;
+        for (int index = 0; index < width * height; index++) {
+            if ((water & 1L << index) == 0 && touchesWater(water, index)) {
+                beaches |= 1L << index;
+            }
+        }
+        if ((beaches & 1L << start) == 0) {
+            return water;
+        }
+        long region = 1L << start;
+        ArrayDeque<Integer> pending = new ArrayDeque<Integer>();
+        pending.add(start);
+        while (!pending.isEmpty()) {
+            int index = pending.poll();
+            int i = index % width;
+            int j = index / width;
+            int[] neighbors = {i > 0 ? index - 1 : -1, i < width - 1 ? index + 1 : -1, j > 0 ? index - width : -1,
+                    j < height - 1 ? index + width : -1};
+            for (int neighbor : neighbors) {
+                if (neighbor != -1 && (beaches & 1L << neighbor) != 0 && (region & 1L << neighbor) == 0) {
+                    region |= 1L << neighbor;
+                    pending.add(neighbor);
+                }
+            }
+        }
+        return water | region;
+    }
+
+    private boolean touchesWater(long water, int index) {
+        int i = index % width;
+        int j = index / width;
+        for (int y = Math.max(0, j - 1); y <= Math.min(height - 1, j + 1); y++) {
+            for (int x = Math.max(0, i - 1); x <= Math.min(width - 1, i + 1); x++) {
+                if ((water & 1L << y * width + x) != 0) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+}
@@ -0,0 +1,82 @@
+package org.flood;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks the queries the game makes to a TileMatrix on every mouse movement and every repaint.
+ * <p/>
+ * The selections are queried for every beach of the board in turn, so that big and small regions are mixed as they
+ * are when the player moves the mouse.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class TileMatrixBenchmark {
+
+    @Param
+    public GameSize gameSize;
+
+    // Given by BenchmarkRunner, one value for each InitializationAlgorithm.
+    @Param
+    public String algorithm;
+
+    private TileMatrix tileMatrix;
+    // The (i, j) pairs of all the beaches of the board.
+    private int[] beaches;
+    private int nextBeach;
+
+    @Setup(Level.Trial)
+    public void setUpTrial() {
+        tileMatrix = Benchmarks.makeTileMatrix(gameSize, algorithm);
+        int side = gameSize.tilesPerRow;
+        int beachCount = 0;
+        beaches = new int[2 * side * side];
+        for (int j = 0; j < side; j++) {
+            for (int i = 0; i < side; i++) {
+                if (tileMatrix.getTileType(i, j) == TileType.BEACH) {
+                    beaches[2 * beachCount] = i;
+                    beaches[2 * beachCount + 1] = j;
+                    beachCount++;
+                }
+            }
+        }
+        beaches = Arrays.copyOf(beaches, 2 * beachCount);
+    }
+
+    /**
+     * Advances to the next beach, returning the position of its i coordinate in the beaches array.
+     */
+    private int nextBeach() {
+        int beach = nextBeach;
+        nextBeach += 2;
+        if (nextBeach == beaches.length) {
+            nextBeach = 0;
+        }
+        return beach;
+    }
+
+    @Benchmark
+    public ArrayList<Tile> getSelection() {
+        int beach = nextBeach();
+        return tileMatrix.getSelection(beaches[beach], beaches[beach + 1]);
+    }
+
+    @Benchmark
+    public int[] getSelectionIndices() {
+        int beach = nextBeach();
+        return tileMatrix.getSelectionIndices(beaches[beach], beaches[beach + 1]);
+    }
+
+    @Benchmark
+    public int getTotalPopulation() {
+        return tileMatrix.getTotalPopulation();
+    }
+
+}
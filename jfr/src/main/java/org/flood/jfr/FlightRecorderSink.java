@@ -0,0 +1,91 @@
+package org.flood.jfr;
+
+import org.flood.GameSize;
+import org.flood.algorithms.InitializationAlgorithm;
+import org.flood.metrics.EventSink;
+
+/**
+ * FlightRecorderSink class that emits the events of the game as JDK Flight Recorder events.
+ * <p/>
+ * Whether each kind of event is recorded and above which duration is configured by the recording, by flood.jfc or by
+ * the defaults of the events. An event is only created if its kind is enabled.
+ */
+public final class FlightRecorderSink implements EventSink {
+
+    private static final String CUSTOM_GAME_SIZE = "CUSTOM";
+
+    // Only used to tell whether the events of their kinds are enabled, which is a property of the kind.
+    private final FloodEvent floodProbe = new FloodEvent();
+    private final GenerationEvent generationProbe = new GenerationEvent();
+    private final PaintEvent paintProbe = new PaintEvent();
+
+    @Override
+    public Object beginFlood() {
+        if (!floodProbe.isEnabled()) {
+            return null;
+        }
+        FloodEvent event = new FloodEvent();
+        event.begin();
+        return event;
+    }
+
+    @Override
+    public void endFlood(Object event, int i, int j, int regionSize) {
+        FloodEvent floodEvent = (FloodEvent) event;
+        floodEvent.end();
+        if (floodEvent.shouldCommit()) {
+            floodEvent.i = i;
+            floodEvent.j = j;
+            floodEvent.regionSize = regionSize;
+            floodEvent.commit();
+        }
+    }
+
+    @Override
+    public Object beginGeneration() {
+        if (!generationProbe.isEnabled()) {
+            return null;
+        }
+        GenerationEvent event = new GenerationEvent();
+        event.begin();
+        return event;
+    }
+
+    @Override
+    public void endGeneration(Object event, InitializationAlgorithm initializationAlgorithm, GameSize gameSize,
+                              int width, int height, boolean cached, int tilesAllocated) {
+        GenerationEvent generationEvent = (GenerationEvent) event;
+        generationEvent.end();
+        if (generationEvent.shouldCommit()) {
+            generationEvent.initializationAlgorithm = initializationAlgorithm.toString();
+            generationEvent.gameSize = gameSize != null ? gameSize.name() : CUSTOM_GAME_SIZE;
+            generationEvent.width = width;
+            generationEvent.height = height;
+            generationEvent.cached = cached;
+            generationEvent.tilesAllocated = tilesAllocated;
+            generationEvent.commit();
+        }
+    }
+
+    @Override
+    public Object beginPaint() {
+        if (!paintProbe.isEnabled()) {
+            return null;
+        }
+        PaintEvent event = new PaintEvent();
+        event.begin();
+        return event;
+    }
+
+    @Override
+    public void endPaint(Object event, int visibleTiles, int drawnTiles) {
+        PaintEvent paintEvent = (PaintEvent) event;
+        paintEvent.end();
+        if (paintEvent.shouldCommit()) {
+            paintEvent.visibleTiles = visibleTiles;
+            paintEvent.drawnTiles = drawnTiles;
+            paintEvent.commit();
+        }
+    }
+
+}
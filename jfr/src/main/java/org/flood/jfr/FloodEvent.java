@@ -0,0 +1,34 @@
+package org.flood.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * The event of a flood started by a click.
+ */
+@Name("org.flood.Flood")
+@Label("Flood")
+@Category("Flood")
+@Description("A flood started at a tile of the board")
+@StackTrace(false)
+@Threshold("0 ms")
+final class FloodEvent extends Event {
+
+    @Label("I")
+    @Description("The i coordinate of the tile clicked")
+    int i;
+
+    @Label("J")
+    @Description("The j coordinate of the tile clicked")
+    int j;
+
+    @Label("Region Size")
+    @Description("How many tiles were flooded")
+    int regionSize;
+
+}
@@ -0,0 +1,42 @@
+package org.flood.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * The event of filling a board at the start of a game, whether it was generated or taken from a cache.
+ */
+@Name("org.flood.Generation")
+@Label("Board Generation")
+@Category("Flood")
+@Description("A board filled by an initialization algorithm or taken from the cache of boards")
+@Threshold("0 ms")
+final class GenerationEvent extends Event {
+
+    @Label("Initialization Algorithm")
+    String initializationAlgorithm;
+
+    @Label("Game Size")
+    @Description("The game size of the board, CUSTOM if it has a custom size")
+    String gameSize;
+
+    @Label("Width")
+    int width;
+
+    @Label("Height")
+    int height;
+
+    @Label("Cached")
+    @Description("Whether or not the board was taken from the cache of boards instead of generated")
+    boolean cached;
+
+    @Label("Tiles Allocated")
+    @Description("For how many tiles new memory was allocated")
+    int tilesAllocated;
+
+}
@@ -0,0 +1,30 @@
+package org.flood.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * The event of a frame painted by the panel of the game.
+ */
+@Name("org.flood.Paint")
+@Label("Paint")
+@Category("Flood")
+@Description("A frame of the board painted on the Event Dispatch Thread")
+@StackTrace(false)
+@Threshold("1 ms")
+final class PaintEvent extends Event {
+
+    @Label("Visible Tiles")
+    @Description("How many tiles were visible")
+    int visibleTiles;
+
+    @Label("Drawn Tiles")
+    @Description("How many tiles were drawn")
+    int drawnTiles;
+
+}
@@ -0,0 +1,82 @@
+package org.flood;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * BoardCache class that keeps the most recently used GeneratedBoards, so that playing the same BoardCode again does not
+ * generate its board again.
+ * <p/>
+ * The cache holds at most a fixed number of tiles. When it is full, the least recently used boards are evicted first.
+ * All the methods are synchronized, so a BoardCache may be shared by games running on different threads.
+ */
+final class BoardCache {
+
+    private final int maximumTiles;
+    private int tiles;
+    // Kept in access order, so that the first entry is the least recently used one.
+    private final LinkedHashMap<BoardCode, GeneratedBoard> boards = new LinkedHashMap<BoardCode, GeneratedBoard>(16,
+            0.75f, true);
+
+    /**
+     * Creates an empty BoardCache.
+     *
+     * @param maximumTiles how many tiles, summed over all the boards, the cache may hold
+     */
+    BoardCache(int maximumTiles) {
+        if (maximumTiles < 0) {
+            throw new IllegalArgumentException("maximumTiles must be nonnegative.");
+        }
+        this.maximumTiles = maximumTiles;
+    }
+
+    /**
+     * Returns the GeneratedBoard of a BoardCode, marking it as the most recently used one.
+     *
+     * @param boardCode the BoardCode
+     * @return a GeneratedBoard or null if the board of the BoardCode is not in the cache
+     */
+    synchronized GeneratedBoard get(BoardCode boardCode) {
+        return boards.get(boardCode);
+    }
+
+    /**
+     * Adds the GeneratedBoard of a BoardCode, evicting the least recently used boards until the cache is not too big.
+     * Boards bigger than the cache are not added.
+     *
+     * @param boardCode the BoardCode
+     * @param board     the GeneratedBoard generated from the BoardCode
+     */
+    synchronized void put(BoardCode boardCode, GeneratedBoard board) {
+        if (!accepts(board.getTileCount())) {
+            return;
+        }
+        GeneratedBoard previous = boards.put(boardCode, board);
+        if (previous != null) {
+            tiles -= previous.getTileCount();
+        }
+        tiles += board.getTileCount();
+        Iterator<Map.Entry<BoardCode, GeneratedBoard>> iterator = boards.entrySet().iterator();
+        while (tiles > maximumTiles) {
+            tiles -= iterator.next().getValue().getTileCount();
+            iterator.remove();
+        }
+    }
+
+    /**
+     * Returns whether or not a board of the specified number of tiles would be added by put. Boards are copied to be
+     * added, so this is checked before copying them.
+     *
+     * @param tileCount how many tiles the board has
+     * @return a boolean
+     */
+    boolean accepts(int tileCount) {
+        return tileCount <= maximumTiles;
+    }
+
+    synchronized int size() {
+        return boards.size();
+    }
+
+}
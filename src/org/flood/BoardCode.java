@@ -0,0 +1,128 @@
+package org.flood;
+
+import org.flood.algorithms.InitializationAlgorithm;
+import org.flood.algorithms.InitializationAlgorithms;
+
+/**
+ * BoardCode class that identifies a board by everything needed to generate it again: the seed, the
+ * InitializationAlgorithm and the dimensions.
+ * <p/>
+ * A BoardCode is written as {@code Algorithm-WIDTHxHEIGHT-seed}, with the seed in base 36, so that players can share
+ * it. Two games started from the same BoardCode have the same tiles.
+ */
+public final class BoardCode {
+
+    private static final int SEED_RADIX = 36;
+
+    private final long seed;
+    private final InitializationAlgorithm initializationAlgorithm;
+    private final int width;
+    private final int height;
+
+    /**
+     * Creates a BoardCode.
+     *
+     * @param seed                    the seed of the board
+     * @param initializationAlgorithm the InitializationAlgorithm that fills the board
+     * @param width                   how many tiles there are in a row, from 1 to GameData.MAXIMUM_BOARD_SIDE
+     * @param height                  how many tiles there are in a column, from 1 to GameData.MAXIMUM_BOARD_SIDE
+     */
+    public BoardCode(long seed, InitializationAlgorithm initializationAlgorithm, int width, int height) {
+        if (width < 1 || width > GameData.MAXIMUM_BOARD_SIDE || height < 1 || height > GameData.MAXIMUM_BOARD_SIDE) {
+            throw new IllegalArgumentException("width and height must be positive and at most MAXIMUM_BOARD_SIDE.");
+        }
+        if (initializationAlgorithm == null) {
+            throw new IllegalArgumentException("initializationAlgorithm must not be null.");
+        }
+        this.seed = seed;
+        this.initializationAlgorithm = initializationAlgorithm;
+        this.width = width;
+        this.height = height;
+    }
+
+    /**
+     * Parses a BoardCode written by toString.
+     *
+     * @param code the String representation of a BoardCode
+     * @return a BoardCode
+     * @throws IllegalArgumentException if the String is not a valid BoardCode
+     */
+    public static BoardCode parse(String code) {
+        // The seed may be negative, so it is the only part that may have a '-'.
+        String[] parts = code.trim().split("-", 3);
+        if (parts.length != 3) {
+            throw new IllegalArgumentException("'" + code + "' is not a board code.");
+        }
+        InitializationAlgorithm initializationAlgorithm = InitializationAlgorithms.getInitializationAlgorithm(parts[0]);
+        if (initializationAlgorithm == null) {
+            throw new IllegalArgumentException("'" + parts[0] + "' is not an initialization algorithm.");
+        }
+        String[] dimensions = parts[1].split("x");
+        if (dimensions.length != 2) {
+            throw new IllegalArgumentException("'" + parts[1] + "' is not a board size.");
+        }
+        int width;
+        int height;
+        long seed;
+        try {
+            width = Integer.parseInt(dimensions[0]);
+            height = Integer.parseInt(dimensions[1]);
+            seed = Long.parseLong(parts[2], SEED_RADIX);
+        } catch (NumberFormatException exception) {
+            throw new IllegalArgumentException("'" + code + "' is not a board code.", exception);
+        }
+        if (width > GameData.MAXIMUM_BOARD_SIDE || height > GameData.MAXIMUM_BOARD_SIDE) {
+            throw new IllegalArgumentException("Boards may have at most " + GameData.MAXIMUM_BOARD_SIDE +
+                    " tiles in each direction.");
+        }
+        return new BoardCode(seed, initializationAlgorithm, width, height);
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    public InitializationAlgorithm getInitializationAlgorithm() {
+        return initializationAlgorithm;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public int getTileCount() {
+        return width * height;
+    }
+
+    @Override
+    public boolean equals(Object object) {
+        if (this == object) {
+            return true;
+        }
+        if (!(object instanceof BoardCode)) {
+            return false;
+        }
+        BoardCode boardCode = (BoardCode) object;
+        return seed == boardCode.seed && width == boardCode.width && height == boardCode.height &&
+                initializationAlgorithm == boardCode.initializationAlgorithm;
+    }
+
+    @Override
+    public int hashCode() {
+        int result = (int) (seed ^ (seed >>> 32));
+        result = 31 * result + initializationAlgorithm.hashCode();
+        result = 31 * result + width;
+        result = 31 * result + height;
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return initializationAlgorithm + "-" + width + "x" + height + "-" + Long.toString(seed, SEED_RADIX);
+    }
+
+}
@@ -0,0 +1,117 @@
+package org.flood;
+
+import java.awt.Rectangle;
+
+/**
+ * BoardSnapshot class that keeps a read-only copy of the board of a FloodEngine, as it was after a move, so that it can
+ * be painted while the FloodEngine makes the next moves on another thread.
+ * <p/>
+ * Each tile is kept as a single byte with its type and population, as in the states of TileMatrix. A GameLogic keeps
+ * two snapshots of its board and only copies the tiles that changed into the one it is not showing. The snapshot is
+ * updated while holding its lock, so it must be read while holding it as well.
+ */
+final class BoardSnapshot {
+
+    private static final TileType[] TILE_TYPES = TileType.values();
+
+    private final int width;
+    private final int height;
+    private final byte[] states;
+    private long version;
+    private BoardCode boardCode;
+    private int humanSalt;
+    private int waterCount;
+    private int totalPopulation;
+    private int moveCount;
+    private long lastFloodDuration;
+    private int lastFloodTiles;
+
+    BoardSnapshot(int width, int height) {
+        this.width = width;
+        this.height = height;
+        this.states = new byte[width * height];
+    }
+
+    /**
+     * Brings this snapshot up to date with a FloodEngine of the same dimensions. Only the tiles inside the area are
+     * copied, the tiles outside of it must not have changed since this snapshot was last updated.
+     *
+     * @param engine            the FloodEngine
+     * @param area              the tiles to copy, in tiles, or null to copy none
+     * @param version           the version of the new state, higher than the one of any state published before
+     * @param lastFloodDuration how long the last flood took, in nanoseconds
+     * @param lastFloodTiles    how many tiles the last flood turned into water
+     */
+    synchronized void update(FloodEngine engine, Rectangle area, long version, long lastFloodDuration,
+                             int lastFloodTiles) {
+        if (area != null) {
+            engine.copyStates(area, states);
+        }
+        this.version = version;
+        boardCode = engine.getBoardCode();
+        humanSalt = engine.getHumanSalt();
+        waterCount = engine.getWaterCount();
+        totalPopulation = engine.getTotalPopulation();
+        moveCount = engine.getMoveCount();
+        this.lastFloodDuration = lastFloodDuration;
+        this.lastFloodTiles = lastFloodTiles;
+    }
+
+    /**
+     * Returns the version of this snapshot, which grows with every state published by its GameLogic.
+     *
+     * @return a positive long
+     */
+    long getVersion() {
+        return version;
+    }
+
+    int getWidth() {
+        return width;
+    }
+
+    int getHeight() {
+        return height;
+    }
+
+    BoardCode getBoardCode() {
+        return boardCode;
+    }
+
+    TileType getTileType(int i, int j) {
+        return TILE_TYPES[states[j * width + i] / TileMatrix.POPULATION_STATES];
+    }
+
+    int getPopulation(int i, int j) {
+        return states[j * width + i] % TileMatrix.POPULATION_STATES;
+    }
+
+    int getHumanLayout(int i, int j) {
+        return TileMatrix.computeHumanLayout(j * width + i, humanSalt);
+    }
+
+    int getTileCount() {
+        return width * height;
+    }
+
+    int getWaterCount() {
+        return waterCount;
+    }
+
+    int getTotalPopulation() {
+        return totalPopulation;
+    }
+
+    int getMoveCount() {
+        return moveCount;
+    }
+
+    long getLastFloodDuration() {
+        return lastFloodDuration;
+    }
+
+    int getLastFloodTiles() {
+        return lastFloodTiles;
+    }
+
+}
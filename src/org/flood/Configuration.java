@@ -25,6 +25,8 @@ public class Configuration {
 
     private final Game game;
     private GameSize gameSize = GameSize.MEDIUM;
+    // The dimensions of a custom board, null if the board has the dimensions of the GameSize.
+    private org.flood.Dimension customSize;
     private Theme theme = GameData.THEMES[0];
     private InitializationAlgorithm initializationAlgorithm = InitializationAlgorithms.getDefaultAlgorithm();
 
@@ -49,12 +51,61 @@ public class Configuration {
     }
 
     public void setGameSize(GameSize gameSize) {
-        if (!getGameSize().equals(gameSize)) {
+        if (customSize != null || !getGameSize().equals(gameSize)) {
             this.gameSize = gameSize;
+            this.customSize = null;
             this.game.notifyGameSizeChange();
         }
     }
 
+    /**
+     * Sets a custom board size, which replaces the GameSize until a GameSize is set again.
+     *
+     * @param width  how many tiles there are in a row, from 1 to GameData.MAXIMUM_BOARD_SIDE
+     * @param height how many tiles there are in a column, from 1 to GameData.MAXIMUM_BOARD_SIDE
+     */
+    public void setCustomSize(int width, int height) {
+        if (width < 1 || width > GameData.MAXIMUM_BOARD_SIDE || height < 1 || height > GameData.MAXIMUM_BOARD_SIDE) {
+            throw new IllegalArgumentException("width and height must be positive and at most MAXIMUM_BOARD_SIDE.");
+        }
+        if (customSize == null || customSize.width != width || customSize.height != height) {
+            this.customSize = new org.flood.Dimension(width, height);
+            this.game.notifyGameSizeChange();
+        }
+    }
+
+    /**
+     * Returns how many tiles there are in a row of the board, given by the custom size or by the GameSize.
+     *
+     * @return a positive int
+     */
+    public int getBoardWidth() {
+        return customSize != null ? customSize.width : getGameSize().tilesPerRow;
+    }
+
+    /**
+     * Returns how many tiles there are in a column of the board, given by the custom size or by the GameSize.
+     *
+     * @return a positive int
+     */
+    public int getBoardHeight() {
+        return customSize != null ? customSize.height : getGameSize().tilesPerRow;
+    }
+
+    /**
+     * Returns the side of the tiles, in pixels, before any zoom. Custom boards get the biggest side that fits the whole
+     * board in the viewport, but never one smaller than the minimum.
+     *
+     * @return a positive int
+     */
+    public int getTileSide() {
+        if (customSize == null) {
+            return getGameSize().tileSide;
+        }
+        int side = GameData.MAXIMUM_VIEWPORT_SIDE / Math.max(customSize.width, customSize.height);
+        return Math.max(GameData.MINIMUM_TILE_SIDE, Math.min(GameSize.SMALL.tileSide, side));
+    }
+
     public Theme getTheme() {
         return theme;
     }
@@ -70,6 +121,10 @@ public class Configuration {
         return initializationAlgorithm;
     }
 
+    public void setInitializationAlgorithm(InitializationAlgorithm initializationAlgorithm) {
+        this.initializationAlgorithm = initializationAlgorithm;
+    }
+
     public void showConfigurationFrame(Frame owner) {
         final JDialog dialog = new JDialog(owner, "Configuration Panel", true);
         dialog.setDefaultCloseOperation(WindowConstants.DISPOSE_ON_CLOSE);
@@ -0,0 +1,412 @@
+package org.flood;
+
+import org.flood.algorithms.InitializationAlgorithm;
+import org.flood.metrics.GameEvents;
+import org.flood.metrics.GameMetrics;
+
+import java.awt.Rectangle;
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+
+/**
+ * FloodEngine class that plays a game of Flood without any user interface.
+ * <p/>
+ * A FloodEngine owns a TileMatrix and the InitializationAlgorithm used to fill it. It does not depend on Swing or on a
+ * Configuration, so it works with java.awt.headless set to true and can be used to play many games in batch.
+ * <p/>
+ * Every game has its own seed, from which all of its random decisions are derived. The BoardCode of a game generates
+ * its board again, and the boards generated most recently are kept in a BoardCache shared by all FloodEngines.
+ * <p/>
+ * A game in progress may be saved to a file and loaded back with GameFile. The moves may also be recorded into a
+ * MoveJournal, from which JournalReplay plays them again.
+ */
+public class FloodEngine {
+
+    // Only picks the seeds of new games, so it is used once per game.
+    private static final Random SEEDS = new Random();
+    private static final int MAXIMUM_CACHED_TILES = 1 << 22;
+    private static final BoardCache CACHE = new BoardCache(MAXIMUM_CACHED_TILES);
+    // How many moves are recorded into a MoveJournal between two checkpoints, besides the one at the end of a game.
+    private static final int CHECKPOINT_INTERVAL = 256;
+
+    private final TileMatrix tileMatrix;
+    private final int width;
+    private final int height;
+    private InitializationAlgorithm initializationAlgorithm;
+    private BoardCode boardCode;
+    private int moveCount;
+    private MoveJournal journal;
+
+    /**
+     * Creates and initializes a FloodEngine with a board of the specified dimensions.
+     *
+     * @param width                   how many tiles there are in a row, from 1 to GameData.MAXIMUM_BOARD_SIDE
+     * @param height                  how many tiles there are in a column, from 1 to GameData.MAXIMUM_BOARD_SIDE
+     * @param initializationAlgorithm the InitializationAlgorithm used to fill the board
+     * @param seed                    the seed of the first game
+     */
+    public FloodEngine(int width, int height, InitializationAlgorithm initializationAlgorithm, long seed) {
+        // Checked before the tiles are allocated, as a bigger board may not even have an index for every tile.
+        if (width < 1 || width > GameData.MAXIMUM_BOARD_SIDE || height < 1 || height > GameData.MAXIMUM_BOARD_SIDE) {
+            throw new IllegalArgumentException("width and height must be positive and at most MAXIMUM_BOARD_SIDE.");
+        }
+        this.width = width;
+        this.height = height;
+        this.initializationAlgorithm = initializationAlgorithm;
+        this.tileMatrix = new TileMatrix(width, height);
+        reinitialize(seed);
+    }
+
+    /**
+     * Creates and initializes a FloodEngine with a board of the specified GameSize.
+     *
+     * @param gameSize                the GameSize of the board
+     * @param initializationAlgorithm the InitializationAlgorithm used to fill the board
+     */
+    public FloodEngine(GameSize gameSize, InitializationAlgorithm initializationAlgorithm) {
+        this(gameSize.tilesPerRow, gameSize.tilesPerRow, initializationAlgorithm, newSeed());
+    }
+
+    /**
+     * Creates a FloodEngine whose first game is the board of a BoardCode.
+     *
+     * @param boardCode the BoardCode
+     */
+    public FloodEngine(BoardCode boardCode) {
+        this(boardCode.getWidth(), boardCode.getHeight(), boardCode.getInitializationAlgorithm(), boardCode.getSeed());
+    }
+
+    /**
+     * Creates a FloodEngine that continues a game that was already started, as when a game is loaded.
+     *
+     * @param boardCode  the BoardCode of the game
+     * @param tileMatrix the TileMatrix with the tiles of the game, which must have the dimensions of the BoardCode
+     * @param moveCount  how many moves were made
+     */
+    FloodEngine(BoardCode boardCode, TileMatrix tileMatrix, int moveCount) {
+        this.width = boardCode.getWidth();
+        this.height = boardCode.getHeight();
+        this.initializationAlgorithm = boardCode.getInitializationAlgorithm();
+        this.boardCode = boardCode;
+        this.tileMatrix = tileMatrix;
+        this.moveCount = moveCount;
+    }
+
+    /**
+     * Loads a game saved by save.
+     *
+     * @param file the File of the saved game
+     * @return a FloodEngine that continues the saved game
+     * @throws IOException if the file could not be read or is not a valid saved game
+     */
+    public static FloodEngine load(File file) throws IOException {
+        return GameFile.read(file);
+    }
+
+    /**
+     * Returns a seed for a new game.
+     *
+     * @return a long
+     */
+    public static long newSeed() {
+        return SEEDS.nextLong();
+    }
+
+    /**
+     * Starts a new game with a new seed, using the current InitializationAlgorithm.
+     */
+    public void reinitialize() {
+        reinitialize(newSeed());
+    }
+
+    /**
+     * Starts a new game with the specified seed, using the current InitializationAlgorithm.
+     *
+     * @param seed the seed of the new game
+     */
+    public void reinitialize(long seed) {
+        reinitialize(new BoardCode(seed, initializationAlgorithm, width, height));
+    }
+
+    /**
+     * Starts a new game on the board of a BoardCode, which becomes the current InitializationAlgorithm.
+     *
+     * @param boardCode a BoardCode with the dimensions of this FloodEngine
+     */
+    public void reinitialize(BoardCode boardCode) {
+        if (boardCode.getWidth() != width || boardCode.getHeight() != height) {
+            throw new IllegalArgumentException("boardCode must have the dimensions of this FloodEngine.");
+        }
+        if (journal != null) {
+            recordCheckpoint();
+        }
+        Object event = GameEvents.beginGeneration();
+        long start = GameMetrics.isRecording() ? System.nanoTime() : 0;
+        GeneratedBoard board = CACHE.get(boardCode);
+        boolean copied = false;
+        if (board != null) {
+            tileMatrix.load(board);
+        } else {
+            tileMatrix.initialize(boardCode.getInitializationAlgorithm(), boardCode.getSeed());
+            // The copy takes as much memory as the tiles, so it is not made for boards that the cache would drop.
+            if (CACHE.accepts(boardCode.getTileCount())) {
+                CACHE.put(boardCode, tileMatrix.toGeneratedBoard());
+                copied = true;
+            }
+        }
+        if (start != 0) {
+            GameMetrics.recordGeneration(boardCode.getInitializationAlgorithm(), System.nanoTime() - start);
+        }
+        if (event != null) {
+            // The tiles of the first game were allocated with the TileMatrix, the tiles of a cached board were copied.
+            int tilesAllocated = (this.boardCode == null ? width * height : 0) + (copied ? width * height : 0);
+            GameEvents.endGeneration(event, boardCode.getInitializationAlgorithm(),
+                    GameSize.forDimensions(width, height), width, height, board != null, tilesAllocated);
+        }
+        this.initializationAlgorithm = boardCode.getInitializationAlgorithm();
+        this.boardCode = boardCode;
+        moveCount = 0;
+        if (journal != null) {
+            journal.recordGame(boardCode, moveCount);
+        }
+    }
+
+    /**
+     * Sets the MoveJournal into which the games of this FloodEngine are recorded, starting with the current one. A
+     * checkpoint of the current game is recorded into the previous MoveJournal, if there was one.
+     *
+     * @param journal a MoveJournal or null to stop recording
+     */
+    public void setJournal(MoveJournal journal) {
+        if (this.journal != null) {
+            recordCheckpoint();
+        }
+        this.journal = journal;
+        if (journal != null) {
+            journal.recordGame(boardCode, moveCount);
+        }
+    }
+
+    private void recordCheckpoint() {
+        journal.recordCheckpoint(moveCount, getWaterCount(), getTotalPopulation());
+    }
+
+    /**
+     * Returns the BoardCode of the current game, which generates its board again.
+     *
+     * @return a BoardCode
+     */
+    public BoardCode getBoardCode() {
+        return boardCode;
+    }
+
+    /**
+     * Saves the current game to a file, replacing it if it exists.
+     *
+     * @param file the File
+     * @throws IOException if the file could not be written
+     */
+    public void save(File file) throws IOException {
+        GameFile.write(file, boardCode, moveCount, tileMatrix);
+    }
+
+    public InitializationAlgorithm getInitializationAlgorithm() {
+        return initializationAlgorithm;
+    }
+
+    /**
+     * Sets the InitializationAlgorithm used the next time the board is filled.
+     *
+     * @param initializationAlgorithm an InitializationAlgorithm
+     */
+    public void setInitializationAlgorithm(InitializationAlgorithm initializationAlgorithm) {
+        this.initializationAlgorithm = initializationAlgorithm;
+    }
+
+    /**
+     * Makes a move, starting a flood in the tile found in (i, j). A move always counts, even if nothing is flooded.
+     *
+     * @param i the i coordinate
+     * @param j the j coordinate
+     * @return the bounding box, in tiles, of all the tiles that changed or null if no tile changed
+     */
+    public Rectangle startFlood(int i, int j) {
+        Rectangle changedTiles = tileMatrix.startFlood(i, j);
+        moveCount++;
+        if (journal != null) {
+            journal.recordMove(i, j);
+            if (moveCount % CHECKPOINT_INTERVAL == 0) {
+                recordCheckpoint();
+            }
+        }
+        return changedTiles;
+    }
+
+    /**
+     * Returns whether or not there is a move that can be undone. The oldest moves can no longer be undone once their
+     * changes take more memory than the history of the TileMatrix may keep.
+     *
+     * @return a boolean
+     */
+    public boolean canUndo() {
+        return tileMatrix.canUndo();
+    }
+
+    public boolean canRedo() {
+        return tileMatrix.canRedo();
+    }
+
+    /**
+     * Sets how many bytes the changes of the moves that can be undone may take. The oldest moves are dropped from the
+     * history first.
+     *
+     * @param historyBudget a nonnegative number of bytes
+     */
+    public void setHistoryBudget(long historyBudget) {
+        tileMatrix.setHistoryBudget(historyBudget);
+    }
+
+    /**
+     * Takes back the last move. This only touches the tiles that the move changed.
+     *
+     * @return the bounding box, in tiles, of all the tiles that changed or null if no tile changed
+     * @throws IllegalStateException if there is no move to undo
+     */
+    public Rectangle undo() {
+        Rectangle changedTiles = tileMatrix.undo();
+        moveCount--;
+        if (journal != null) {
+            journal.recordUndo();
+        }
+        return changedTiles;
+    }
+
+    /**
+     * Makes again the last move that was undone.
+     *
+     * @return the bounding box, in tiles, of all the tiles that changed or null if no tile changed
+     * @throws IllegalStateException if there is no move to redo
+     */
+    public Rectangle redo() {
+        Rectangle changedTiles = tileMatrix.redo();
+        moveCount++;
+        if (journal != null) {
+            journal.recordRedo();
+        }
+        return changedTiles;
+    }
+
+    /**
+     * Returns how many tiles a flood starting at (i, j) would hit.
+     *
+     * @param i the i coordinate
+     * @param j the j coordinate
+     * @return a nonnegative int
+     */
+    public int getSelectionSize(int i, int j) {
+        return tileMatrix.getSelectionIndices(i, j).length;
+    }
+
+    /**
+     * Returns the indices ({@code j * width + i}) of all the tiles that a flood starting at (i, j) would hit.
+     *
+     * @param i the i coordinate
+     * @param j the j coordinate
+     * @return a new array of indices, empty if the tile at (i, j) is not a beach
+     */
+    public int[] getSelection(int i, int j) {
+        return tileMatrix.getSelectionIndices(i, j).clone();
+    }
+
+    /**
+     * Returns the same indices as getSelection without copying them. The returned array must not be modified.
+     */
+    int[] getSharedSelection(int i, int j) {
+        return tileMatrix.getSelectionIndices(i, j);
+    }
+
+    /**
+     * Sets the RegionListener told about the beach regions of the board as they change, that is, about what each click
+     * would flood.
+     *
+     * @param regionListener a RegionListener or null to stop telling
+     */
+    void setRegionListener(RegionListener regionListener) {
+        tileMatrix.setRegionListener(regionListener);
+    }
+
+    public TileType getTileType(int i, int j) {
+        return tileMatrix.getTileType(i, j);
+    }
+
+    public int getPopulation(int i, int j) {
+        return tileMatrix.getPopulation(i, j);
+    }
+
+    int getHumanLayout(int i, int j) {
+        return tileMatrix.getHumanLayout(i, j);
+    }
+
+    int getHumanSalt() {
+        return tileMatrix.getHumanSalt();
+    }
+
+    /**
+     * Copies the states of the tiles inside an area into an array, as a BoardSnapshot keeps them.
+     *
+     * @see TileMatrix#copyStates(Rectangle, byte[])
+     */
+    void copyStates(Rectangle area, byte[] states) {
+        tileMatrix.copyStates(area, states);
+    }
+
+    public int getWaterCount() {
+        return tileMatrix.getWaterCount();
+    }
+
+    public int getTotalPopulation() {
+        return tileMatrix.getTotalPopulation();
+    }
+
+    /**
+     * Returns the Zobrist hash of the board, which is equal for equal boards whatever moves led to them.
+     *
+     * @return a long
+     * @see TileMatrix#getHash()
+     */
+    public long getBoardHash() {
+        return tileMatrix.getHash();
+    }
+
+    /**
+     * Returns whether or not every tile of the board is water.
+     *
+     * @return a boolean
+     */
+    public boolean isFlooded() {
+        return getWaterCount() == getTileCount();
+    }
+
+    /**
+     * Returns how many moves were made since the board was last filled.
+     *
+     * @return a nonnegative int
+     */
+    public int getMoveCount() {
+        return moveCount;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public int getTileCount() {
+        return width * height;
+    }
+
+}
@@ -0,0 +1,161 @@
+package org.flood;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * GainMap class that keeps, for every tile, how much a click on it would flood: how many tiles or how many humans.
+ * <p/>
+ * The gains are stored as levels, one byte per tile, on a logarithmic scale: level zero for no gain and level n for a
+ * gain of at least 2^(n - 1). Every tile of a beach region has the gain of the whole region, so the map is filled
+ * region by region from the regions a TileMatrix already keeps labeled, instead of with a selection per tile.
+ * <p/>
+ * The map is computed on a background thread. As a RegionListener it only queues the regions that changed, with the
+ * populations the TileMatrix counted for them, so a flood refreshes the tiles of the regions it changed and nothing else
+ * and the background thread never reads the tiles of the TileMatrix. The levels are read without locking while they are
+ * painted, which may show the gains of the previous move for a moment, until the change callback repaints them.
+ */
+final class GainMap implements RegionListener {
+
+    /**
+     * The highest level, for gains of at least 2^(MAXIMUM_LEVEL - 1).
+     */
+    static final int MAXIMUM_LEVEL = 15;
+
+    private final ThreadPoolExecutor worker;
+    // Run on the background thread whenever it is done with every queued change.
+    private final Runnable changeCallback;
+    private volatile byte[] levels = new byte[0];
+    // Whether the gains are counted in humans instead of in tiles.
+    private volatile boolean countingHumans;
+    // Incremented whenever all the regions are queued again, which makes every change queued before obsolete.
+    private volatile int generation;
+
+    /**
+     * Creates an empty GainMap. It is filled once it is set as the RegionListener of a FloodEngine.
+     *
+     * @param changeCallback a Runnable called on the background thread after the levels change
+     */
+    GainMap(Runnable changeCallback) {
+        this.changeCallback = changeCallback;
+        ThreadFactory threadFactory = new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "Gain Map");
+                thread.setDaemon(true);
+                return thread;
+            }
+        };
+        worker = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<Runnable>(),
+                threadFactory);
+    }
+
+    /**
+     * Sets whether the gains are counted in humans instead of in tiles. Only applies to the regions queued after this
+     * call, so the GainMap should be set as the RegionListener again after it.
+     *
+     * @param countingHumans true to count humans, false to count tiles
+     */
+    void setCountingHumans(boolean countingHumans) {
+        this.countingHumans = countingHumans;
+    }
+
+    /**
+     * Returns the level of every tile, indexed by {@code j * width + i}. The array is shared with the background
+     * thread and must not be modified. It is empty until the first regions are processed.
+     *
+     * @return an array of levels from 0 up to MAXIMUM_LEVEL
+     */
+    byte[] getLevels() {
+        return levels;
+    }
+
+    @Override
+    public void regionsLabeled(TileMatrix source, final List<int[]> regions, final int[] populations) {
+        final int taskGeneration = ++generation;
+        final boolean humans = countingHumans;
+        final int tileCount = source.getDimensions().width * source.getDimensions().height;
+        submit(new Runnable() {
+            @Override
+            public void run() {
+                if (taskGeneration != generation) {
+                    return;
+                }
+                byte[] newLevels = levels;
+                if (newLevels.length != tileCount) {
+                    newLevels = new byte[tileCount];
+                } else {
+                    Arrays.fill(newLevels, (byte) 0);
+                }
+                for (int label = 0; label < regions.size(); label++) {
+                    int[] members = regions.get(label);
+                    if (members != null) {
+                        fill(newLevels, members, populations[label], humans);
+                    }
+                }
+                levels = newLevels;
+            }
+        });
+    }
+
+    @Override
+    public void regionAdded(TileMatrix source, final int[] members, final int population) {
+        final int taskGeneration = generation;
+        final boolean humans = countingHumans;
+        submit(new Runnable() {
+            @Override
+            public void run() {
+                if (taskGeneration == generation) {
+                    fill(levels, members, population, humans);
+                }
+            }
+        });
+    }
+
+    @Override
+    public void regionRemoved(TileMatrix source, final int[] members) {
+        final int taskGeneration = generation;
+        submit(new Runnable() {
+            @Override
+            public void run() {
+                if (taskGeneration == generation) {
+                    byte[] currentLevels = levels;
+                    for (int member : members) {
+                        currentLevels[member] = 0;
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * Queues a change, calling the change callback after it if no other change is queued by then.
+     */
+    private void submit(final Runnable change) {
+        worker.execute(new Runnable() {
+            @Override
+            public void run() {
+                change.run();
+                if (worker.getQueue().isEmpty()) {
+                    changeCallback.run();
+                }
+            }
+        });
+    }
+
+    /**
+     * Sets the levels of the members of a region to the level of its gain.
+     */
+    private static void fill(byte[] levels, int[] members, int population, boolean humans) {
+        int gain = humans ? population : members.length;
+        byte level = (byte) Math.min(MAXIMUM_LEVEL, Integer.SIZE - Integer.numberOfLeadingZeros(gain));
+        for (int member : members) {
+            levels[member] = level;
+        }
+    }
+
+}
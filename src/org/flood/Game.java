@@ -1,12 +1,17 @@
 package org.flood;
 
 import javax.swing.*;
+import javax.swing.filechooser.FileNameExtensionFilter;
 import java.awt.*;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
+import java.awt.event.InputEvent;
+import java.awt.event.KeyEvent;
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.ExecutionException;
 
 import static org.flood.GameData.MENU_BAR_HEIGHT;
-import static org.flood.GameData.STATUS_BAR_HEIGHT;
 
 /**
  * The main class of the game. A Game object represents a whole game.
@@ -19,11 +24,19 @@ class Game {
 
     static {
         TIPS.add("You can change the algorithm used to generate the tiles in the configurations.");
+        TIPS.add("You can challenge a friend to play the same board by sharing its board code.");
+        TIPS.add("You can save a game and continue it later from where you stopped.");
+        TIPS.add("You can take back a move with Ctrl+Z and make it again with Ctrl+Y.");
+        TIPS.add("You can record your moves into a journal and replay it to check your games.");
+        TIPS.add("The gain highlight modes tint every tile by how much a click on it would flood.");
     }
 
     private final JFrame frame = new JFrame("Flood!");
     private final Configuration configuration = new Configuration(this);
     private final GamePanel panel = new GamePanel(configuration);
+    // Kept, so that it opens in the directory it was last used in.
+    private final JFileChooser fileChooser = new JFileChooser();
+    private final JFileChooser journalChooser = new JFileChooser();
 
     Game() {
         initComponents();
@@ -52,6 +65,19 @@ class Game {
             });
             sizeMenu.add(menuItem);
         }
+        JMenuItem customSizeItem = new JMenuItem("Custom");
+        customSizeItem.setToolTipText("Plays on a board of any width and height. Big boards can be scrolled and zoomed.");
+        customSizeItem.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                String message = "Board size (width x height), at most " + GameData.MAXIMUM_BOARD_SIDE + " tiles each:";
+                String size = JOptionPane.showInputDialog(frame, message, "Custom Size", JOptionPane.PLAIN_MESSAGE);
+                if (size != null) {
+                    setCustomSize(size);
+                }
+            }
+        });
+        sizeMenu.add(customSizeItem);
 
         ButtonGroup themeButtonGroup = new ButtonGroup();
         for (final Theme theme : GameData.THEMES) {
@@ -95,6 +121,125 @@ class Game {
             }
         });
 
+        JMenuItem undoOption = new JMenuItem("Undo");
+        undoOption.setToolTipText("Takes back the last move.");
+        undoOption.setAccelerator(KeyStroke.getKeyStroke(KeyEvent.VK_Z, InputEvent.CTRL_DOWN_MASK));
+        undoOption.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                panel.undo();
+            }
+        });
+
+        JMenuItem redoOption = new JMenuItem("Redo");
+        redoOption.setToolTipText("Makes again the last move that was taken back.");
+        redoOption.setAccelerator(KeyStroke.getKeyStroke(KeyEvent.VK_Y, InputEvent.CTRL_DOWN_MASK));
+        redoOption.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                panel.redo();
+            }
+        });
+
+        JMenuItem boardCodeOption = new JMenuItem("Board Code");
+        boardCodeOption.setToolTipText("Shows the code that can be used to play this board again.");
+        boardCodeOption.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                // A text field, so that the code can be copied.
+                JTextField codeField = new JTextField(panel.getBoardCode().toString());
+                codeField.setEditable(false);
+                JOptionPane.showMessageDialog(frame, codeField, "Board Code", JOptionPane.PLAIN_MESSAGE);
+            }
+        });
+
+        JMenuItem playBoardCodeOption = new JMenuItem("Play Board Code");
+        playBoardCodeOption.setToolTipText("Starts a game on the board of a board code.");
+        playBoardCodeOption.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                String code = JOptionPane.showInputDialog(frame, "Board code:", "Play Board Code",
+                        JOptionPane.PLAIN_MESSAGE);
+                if (code != null) {
+                    playBoardCode(code);
+                }
+            }
+        });
+
+        fileChooser.setFileFilter(new FileNameExtensionFilter("Saved games", GameFile.EXTENSION));
+
+        JMenuItem saveOption = new JMenuItem("Save Game");
+        saveOption.setToolTipText("Saves the game to a file, so that it can be continued later.");
+        saveOption.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                if (fileChooser.showSaveDialog(frame) == JFileChooser.APPROVE_OPTION) {
+                    saveGame(fileChooser.getSelectedFile());
+                }
+            }
+        });
+
+        JMenuItem loadOption = new JMenuItem("Load Game");
+        loadOption.setToolTipText("Continues a game that was saved to a file.");
+        loadOption.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                if (fileChooser.showOpenDialog(frame) == JFileChooser.APPROVE_OPTION) {
+                    loadGame(fileChooser.getSelectedFile());
+                }
+            }
+        });
+
+        journalChooser.setFileFilter(new FileNameExtensionFilter("Journals", MoveJournal.EXTENSION));
+
+        final JCheckBoxMenuItem recordJournalOption = new JCheckBoxMenuItem("Record Journal");
+        recordJournalOption.setToolTipText("Records every move into a journal, starting with this game.");
+        recordJournalOption.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                if (recordJournalOption.isSelected()) {
+                    if (journalChooser.showSaveDialog(frame) == JFileChooser.APPROVE_OPTION) {
+                        startJournal(journalChooser.getSelectedFile());
+                    }
+                } else {
+                    stopJournal();
+                }
+                recordJournalOption.setSelected(panel.isRecordingJournal());
+            }
+        });
+
+        JMenuItem replayJournalOption = new JMenuItem("Replay Journal");
+        replayJournalOption.setToolTipText("Plays the games of a journal again and checks that they end the same way.");
+        replayJournalOption.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                if (journalChooser.showOpenDialog(frame) == JFileChooser.APPROVE_OPTION) {
+                    replayJournal(journalChooser.getSelectedFile());
+                }
+            }
+        });
+
+        // Writes the records still pending when the game exits. The game logic closes the journal, as it owns it.
+        Runtime.getRuntime().addShutdownHook(new Thread() {
+            @Override
+            public void run() {
+                try {
+                    panel.closeJournal();
+                } catch (IOException ignored) {
+                    // Nothing can be done about it when the game is exiting.
+                }
+            }
+        });
+
+        final JCheckBoxMenuItem performanceOverlayOption = new JCheckBoxMenuItem("Performance Overlay");
+        performanceOverlayOption.setToolTipText("Shows how long painting and flooding take and how much memory is used.");
+        performanceOverlayOption.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                panel.setShowingOverlay(performanceOverlayOption.isSelected());
+            }
+        });
+
         JMenuItem configurationsOption = new JMenuItem("Configurations");
         configurationsOption.setToolTipText("Opens the configuration panel.");
         configurationsOption.addActionListener(new ActionListener() {
@@ -129,6 +274,15 @@ class Game {
         optionsMenu.add(themeMenu);
         optionsMenu.add(highlightMenu);
         optionsMenu.add(resetOption);
+        optionsMenu.add(undoOption);
+        optionsMenu.add(redoOption);
+        optionsMenu.add(boardCodeOption);
+        optionsMenu.add(playBoardCodeOption);
+        optionsMenu.add(saveOption);
+        optionsMenu.add(loadOption);
+        optionsMenu.add(recordJournalOption);
+        optionsMenu.add(replayJournalOption);
+        optionsMenu.add(performanceOverlayOption);
         optionsMenu.add(configurationsOption);
         optionsMenu.add(tip);
         optionsMenu.add(exitOption);
@@ -144,8 +298,181 @@ class Game {
         resetGameSize();
     }
 
+    /**
+     * Starts a game on the board of a board code, changing the GameSize and the InitializationAlgorithm to the ones of
+     * the code. Invalid codes are reported to the player.
+     *
+     * @param code the String representation of a BoardCode
+     */
+    private void playBoardCode(String code) {
+        BoardCode boardCode;
+        try {
+            boardCode = BoardCode.parse(code);
+        } catch (IllegalArgumentException exception) {
+            JOptionPane.showMessageDialog(frame, exception.getMessage(), "Invalid Board Code", JOptionPane.ERROR_MESSAGE);
+            return;
+        }
+        configuration.setInitializationAlgorithm(boardCode.getInitializationAlgorithm());
+        // Queued before the size is set, so that resizing the panel finds the board of the code and generates nothing.
+        panel.reinitialize(boardCode);
+        setBoardSize(boardCode.getWidth(), boardCode.getHeight());
+    }
+
+    /**
+     * Saves the game to a file in the background. If the name of the file has no extension, the extension of saved
+     * games is added. Errors are reported to the player.
+     *
+     * @param file the File
+     */
+    private void saveGame(File file) {
+        if (!file.getName().contains(".")) {
+            file = new File(file.getPath() + "." + GameFile.EXTENSION);
+        }
+        panel.save(file, reportFailure("Could Not Save"));
+    }
+
+    /**
+     * Continues a game saved to a file, changing the size and the InitializationAlgorithm to the ones of the game once
+     * it is loaded in the background. Errors are reported to the player.
+     *
+     * @param file the File
+     */
+    private void loadGame(File file) {
+        panel.load(file, new GameLogic.LoadListener() {
+            @Override
+            public void gameLoaded(final BoardCode boardCode) {
+                SwingUtilities.invokeLater(new Runnable() {
+                    @Override
+                    public void run() {
+                        configuration.setInitializationAlgorithm(boardCode.getInitializationAlgorithm());
+                        // The loaded game already replaced the old one, so resizing the panel keeps it.
+                        setBoardSize(boardCode.getWidth(), boardCode.getHeight());
+                    }
+                });
+            }
+
+            @Override
+            public void loadFailed(final String message) {
+                SwingUtilities.invokeLater(new Runnable() {
+                    @Override
+                    public void run() {
+                        JOptionPane.showMessageDialog(frame, message, "Could Not Load", JOptionPane.ERROR_MESSAGE);
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * Starts recording the moves into a journal. If the name of the file has no extension, the extension of journals
+     * is added. Errors are reported to the player.
+     *
+     * @param file the File of the journal, which is appended to if it already is a journal
+     */
+    private void startJournal(File file) {
+        if (!file.getName().contains(".")) {
+            file = new File(file.getPath() + "." + MoveJournal.EXTENSION);
+        }
+        MoveJournal journal;
+        try {
+            journal = new MoveJournal(file);
+        } catch (IOException exception) {
+            JOptionPane.showMessageDialog(frame, exception.getMessage(), "Could Not Record", JOptionPane.ERROR_MESSAGE);
+            return;
+        }
+        panel.startJournal(journal, reportFailure("Could Not Record"));
+    }
+
+    /**
+     * Stops recording the moves. The journal is closed in the background and errors are reported to the player.
+     */
+    private void stopJournal() {
+        panel.stopJournal(reportFailure("Could Not Record"));
+    }
+
+    /**
+     * Returns a GameLogic.FailureListener that reports failures to the player in an error dialog with the specified
+     * title, on the Event Dispatch Thread.
+     */
+    private GameLogic.FailureListener reportFailure(final String title) {
+        return new GameLogic.FailureListener() {
+            @Override
+            public void failed(final String message) {
+                SwingUtilities.invokeLater(new Runnable() {
+                    @Override
+                    public void run() {
+                        JOptionPane.showMessageDialog(frame, message, title, JOptionPane.ERROR_MESSAGE);
+                    }
+                });
+            }
+        };
+    }
+
+    /**
+     * Replays a journal in the background and shows the results to the player.
+     *
+     * @param file the File of the journal
+     */
+    private void replayJournal(final File file) {
+        new SwingWorker<JournalReplay, Void>() {
+            @Override
+            protected JournalReplay doInBackground() throws IOException {
+                return JournalReplay.replay(file);
+            }
+
+            @Override
+            protected void done() {
+                try {
+                    JournalReplay replay = get();
+                    int type = replay.isConsistent() ? JOptionPane.INFORMATION_MESSAGE : JOptionPane.WARNING_MESSAGE;
+                    JOptionPane.showMessageDialog(frame, replay.toString(), "Replay Journal", type);
+                } catch (InterruptedException exception) {
+                    Thread.currentThread().interrupt();
+                } catch (ExecutionException exception) {
+                    String message = exception.getCause().getMessage();
+                    JOptionPane.showMessageDialog(frame, message, "Could Not Replay", JOptionPane.ERROR_MESSAGE);
+                }
+            }
+        }.execute();
+    }
+
+    /**
+     * Changes the size of the board to the GameSize with the specified dimensions or, if there is none, to a custom
+     * size.
+     *
+     * @param width  how many tiles there are in a row
+     * @param height how many tiles there are in a column
+     */
+    private void setBoardSize(int width, int height) {
+        GameSize gameSize = GameSize.forDimensions(width, height);
+        if (gameSize != null) {
+            configuration.setGameSize(gameSize);
+        } else {
+            configuration.setCustomSize(width, height);
+        }
+    }
+
+    /**
+     * Changes the board to a custom size written as {@code WIDTHxHEIGHT}. Invalid sizes are reported to the player.
+     *
+     * @param size the String representation of the size
+     */
+    private void setCustomSize(String size) {
+        String[] dimensions = size.trim().toLowerCase().split("\\s*x\\s*");
+        if (dimensions.length == 2) {
+            try {
+                configuration.setCustomSize(Integer.parseInt(dimensions[0]), Integer.parseInt(dimensions[1]));
+                return;
+            } catch (IllegalArgumentException ignored) {
+                // Reported below, as any other invalid size.
+            }
+        }
+        String message = "'" + size + "' is not a valid board size.";
+        JOptionPane.showMessageDialog(frame, message, "Invalid Size", JOptionPane.ERROR_MESSAGE);
+    }
+
     public void notifyThemeChange() {
-        panel.repaint();
+        panel.updateTheme();
     }
 
     public void notifyGameSizeChange() {
@@ -153,17 +480,17 @@ class Game {
     }
 
     void resetGameSize() {
+        // Resizing the panel already starts a new game, generating another one could take long for big boards.
         panel.resize(configuration);
-        panel.reinitialize();
-        updateFrameSize(configuration.getGameSize());
+        updateFrameSize();
         centerFrame();
     }
 
-    private void updateFrameSize(GameSize gameSize) {
-        int panelSide = gameSize.tileSide * gameSize.tilesPerRow;
+    private void updateFrameSize() {
+        java.awt.Dimension panelSize = panel.getPreferredPanelSize();
         Insets insets = frame.getInsets();
-        int width = panelSide + insets.right + insets.left;
-        int height = panelSide + MENU_BAR_HEIGHT + STATUS_BAR_HEIGHT + insets.bottom + insets.top;
+        int width = panelSize.width + insets.right + insets.left;
+        int height = panelSize.height + MENU_BAR_HEIGHT + insets.bottom + insets.top;
         frame.setSize(width, height);
         frame.repaint();
     }
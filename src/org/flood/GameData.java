@@ -1,7 +1,6 @@
 package org.flood;
 
 import java.awt.*;
-import java.util.Random;
 
 /**
  * GameData class used to store constant data.
@@ -13,8 +12,14 @@ public class GameData {
 
     static final int MENU_BAR_HEIGHT = 20;
     static final int STATUS_BAR_HEIGHT = 20;
+    // Boards bigger than this, in pixels, are shown in a viewport that scrolls.
+    static final int MAXIMUM_VIEWPORT_SIDE = 900;
+    // The limits of the zoom. Smaller tiles would have no room for the humans.
+    static final int MINIMUM_TILE_SIDE = TileAtlas.PEOPLE_SQUARE_SIDE + 2;
+    static final int MAXIMUM_TILE_SIDE = 64;
+    // The biggest width and height of a custom board.
+    public static final int MAXIMUM_BOARD_SIDE = 10000;
 
-    public static final Random random = new Random();
     // Should be nonnegative and smaller than or equal to one.
     public static final double WATER_RATE = 0.2;
     // Colors from http://www.tayloredmktg.com/rgb/
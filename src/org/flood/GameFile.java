@@ -0,0 +1,336 @@
+package org.flood;
+
+import org.flood.algorithms.InitializationAlgorithm;
+import org.flood.algorithms.InitializationAlgorithms;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * GameFile class that saves a game of Flood to a file and loads it back.
+ * <p/>
+ * A file starts with a header that has the BoardCode of the game, the move count, the salt of the layouts of the
+ * humans and a checksum of everything else in the file. After the header come the types of the tiles, two bits per
+ * tile, and then their populations, four bits per tile. Both are packed into little-endian longs, in the order of the
+ * packed arrays of TileMatrix.
+ * <p/>
+ * The file is read through a MappedByteBuffer and written through a small reused buffer, straight from and into the
+ * packed arrays of the TileMatrix, so no Tile objects are made.
+ */
+final class GameFile {
+
+    /**
+     * The extension of the names of saved games.
+     */
+    static final String EXTENSION = "flood";
+
+    // "FLOD", read as a little-endian int.
+    private static final int MAGIC = 0x444F4C46;
+    private static final short VERSION = 1;
+    private static final int HEADER_SIZE = 40;
+    private static final int CHECKSUM_OFFSET = 32;
+    private static final Charset CHARSET = Charset.forName("UTF-8");
+    private static final int TYPE_BITS = 2;
+    private static final int POPULATION_BITS = 4;
+    private static final long CHECKSUM_PRIME = 0x100000001B3L;
+    // A one in every byte of a long.
+    private static final long BYTE_LANES = 0x0101010101010101L;
+    private static final int WRITE_BUFFER_SIZE = 1 << 16;
+
+    private GameFile() {
+    }
+
+    /**
+     * Writes a game to a file, replacing it if it exists.
+     * <p/>
+     * The game is written to a temporary file in the same directory, which is then renamed over the file, so that a
+     * crash or a failed write never leaves a truncated save behind.
+     *
+     * @param file       the File
+     * @param boardCode  the BoardCode of the game
+     * @param moveCount  how many moves were made
+     * @param tileMatrix the TileMatrix of the game
+     * @throws IOException if the file could not be written
+     */
+    static void write(File file, BoardCode boardCode, int moveCount, TileMatrix tileMatrix) throws IOException {
+        File temporaryFile;
+        try {
+            // The prefix of a temporary file must have at least three characters.
+            temporaryFile = File.createTempFile("." + file.getName(), ".tmp", file.getAbsoluteFile().getParentFile());
+        } catch (IOException exception) {
+            throw new IOException("Could not write " + file + ": " + exception.getMessage(), exception);
+        }
+        boolean moved = false;
+        try {
+            writeFile(temporaryFile, boardCode, moveCount, tileMatrix);
+            Path source = temporaryFile.toPath();
+            Path target = file.toPath();
+            try {
+                Files.move(source, target, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException exception) {
+                Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+            moved = true;
+        } finally {
+            if (!moved && !temporaryFile.delete()) {
+                temporaryFile.deleteOnExit();
+            }
+        }
+    }
+
+    /**
+     * Writes a game to an empty file and forces it to the storage.
+     * <p/>
+     * The file is not mapped, as a file that is still mapped cannot be renamed on some systems and a mapping is only
+     * released when it is garbage collected. The packed tiles are written first, through a small buffer, and the header
+     * last, once the checksum is known.
+     */
+    private static void writeFile(File file, BoardCode boardCode, int moveCount, TileMatrix tileMatrix)
+            throws IOException {
+        byte[] name = boardCode.getInitializationAlgorithm().toString().getBytes(CHARSET);
+        long payloadOffset = getPayloadOffset(name.length);
+        // Padded with zeros up to the packed tiles.
+        ByteBuffer header = ByteBuffer.allocate((int) payloadOffset).order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(MAGIC);
+        header.putShort(VERSION);
+        header.putShort((short) name.length);
+        header.putInt(boardCode.getWidth());
+        header.putInt(boardCode.getHeight());
+        header.putLong(boardCode.getSeed());
+        header.putInt(moveCount);
+        header.putInt(tileMatrix.getHumanSalt());
+        header.putLong(0); // The checksum, only known after everything else is written.
+        header.put(name);
+        long checksum = checksumHeader(header, name.length);
+        RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+        try {
+            FileChannel channel = randomAccessFile.getChannel();
+            channel.position(payloadOffset);
+            ByteBuffer buffer = ByteBuffer.allocateDirect(WRITE_BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            checksum = writePacked(channel, buffer, tileMatrix.getTypeArray(), TYPE_BITS, checksum);
+            checksum = writePacked(channel, buffer, tileMatrix.getPopulationArray(), POPULATION_BITS, checksum);
+            flush(channel, buffer);
+            header.putLong(CHECKSUM_OFFSET, checksum);
+            header.clear();
+            while (header.hasRemaining()) {
+                channel.write(header, header.position());
+            }
+            channel.force(true);
+        } finally {
+            randomAccessFile.close();
+        }
+    }
+
+    /**
+     * Writes everything in a buffer to the current position of a channel and clears the buffer.
+     */
+    private static void flush(FileChannel channel, ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    /**
+     * Reads a game written by write.
+     *
+     * @param file the File
+     * @return a FloodEngine with the game
+     * @throws IOException if the file could not be read or is not a valid saved game
+     */
+    static FloodEngine read(File file) throws IOException {
+        RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+        try {
+            FileChannel channel = randomAccessFile.getChannel();
+            long size = channel.size();
+            if (size < HEADER_SIZE || size > Integer.MAX_VALUE) {
+                throw new IOException(file + " is not a saved game.");
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+            if (buffer.getInt() != MAGIC) {
+                throw new IOException(file + " is not a saved game.");
+            }
+            if (buffer.getShort() != VERSION) {
+                throw new IOException(file + " was saved by another version of the game.");
+            }
+            int nameLength = buffer.getShort();
+            int width = buffer.getInt();
+            int height = buffer.getInt();
+            long seed = buffer.getLong();
+            int moveCount = buffer.getInt();
+            int humanSalt = buffer.getInt();
+            long expectedChecksum = buffer.getLong();
+            if (nameLength < 0 || width < 1 || height < 1 || (long) width * height > Integer.MAX_VALUE || moveCount < 0) {
+                throw new IOException(file + " has an invalid header.");
+            }
+            // Checked before anything is allocated for the tiles, as the board may not fit in memory.
+            if (width > GameData.MAXIMUM_BOARD_SIDE || height > GameData.MAXIMUM_BOARD_SIDE) {
+                throw new IOException(file + " has a board of " + width + "x" + height +
+                        ", but boards may have at most " + GameData.MAXIMUM_BOARD_SIDE + " tiles in each direction.");
+            }
+            int tileCount = width * height;
+            long payloadOffset = getPayloadOffset(nameLength);
+            if (size != payloadOffset + 8L * (getWordCount(tileCount, TYPE_BITS) + getWordCount(tileCount,
+                    POPULATION_BITS))) {
+                throw new IOException(file + " does not have the size of a game of " + width + "x" + height + ".");
+            }
+            byte[] name = new byte[nameLength];
+            buffer.get(name);
+            InitializationAlgorithm initializationAlgorithm = InitializationAlgorithms.getInitializationAlgorithm(
+                    new String(name, CHARSET));
+            if (initializationAlgorithm == null) {
+                throw new IOException(file + " uses an unknown initialization algorithm.");
+            }
+            buffer.position((int) payloadOffset);
+            long checksum = checksumHeader(buffer, nameLength);
+            TileMatrix tileMatrix = new TileMatrix(width, height);
+            checksum = readPacked(buffer, tileMatrix.getTypeArray(), TYPE_BITS, TileType.values().length - 1,
+                    checksum);
+            checksum = readPacked(buffer, tileMatrix.getPopulationArray(), POPULATION_BITS, Population.MAX_POPULATION,
+                    checksum);
+            if (checksum != expectedChecksum) {
+                throw new IOException(file + " is corrupted.");
+            }
+            tileMatrix.restore(humanSalt);
+            return new FloodEngine(new BoardCode(seed, initializationAlgorithm, width, height), tileMatrix, moveCount);
+        } catch (IllegalArgumentException exception) {
+            throw new IOException(file + " is not a valid saved game.", exception);
+        } finally {
+            randomAccessFile.close();
+        }
+    }
+
+    /**
+     * Returns where the packed tiles start: right after the name of the algorithm, aligned to a long.
+     */
+    private static long getPayloadOffset(int nameLength) {
+        return (HEADER_SIZE + nameLength + 7) & ~7L;
+    }
+
+    /**
+     * Returns how many longs are needed to pack the specified number of values of the specified number of bits.
+     */
+    private static long getWordCount(int count, int bits) {
+        int valuesPerWord = Long.SIZE / bits;
+        return (count + valuesPerWord - 1) / valuesPerWord;
+    }
+
+    /**
+     * Computes the checksum of everything in the header but the checksum itself.
+     */
+    private static long checksumHeader(ByteBuffer buffer, int nameLength) {
+        long checksum = 0;
+        checksum = mix(checksum, buffer.getLong(0));
+        checksum = mix(checksum, buffer.getLong(8));
+        checksum = mix(checksum, buffer.getLong(16));
+        checksum = mix(checksum, buffer.getLong(24));
+        for (int k = 0; k < nameLength; k++) {
+            checksum = mix(checksum, buffer.get(HEADER_SIZE + k));
+        }
+        return checksum;
+    }
+
+    private static long mix(long checksum, long word) {
+        return Long.rotateLeft((checksum ^ word) * CHECKSUM_PRIME, 31);
+    }
+
+    /**
+     * Packs every value of an array into longs of the specified number of bits per value and writes them through a
+     * buffer, which is flushed to the channel whenever it is full.
+     *
+     * @return the checksum updated with the written longs
+     */
+    private static long writePacked(FileChannel channel, ByteBuffer buffer, byte[] values, int bits, long checksum)
+            throws IOException {
+        int valuesPerWord = Long.SIZE / bits;
+        // Reads eight values at a time as a single long.
+        ByteBuffer bytes = ByteBuffer.wrap(values).order(ByteOrder.LITTLE_ENDIAN);
+        for (int start = 0; start < values.length; start += valuesPerWord) {
+            int end = Math.min(start + valuesPerWord, values.length);
+            int index = start;
+            long word = 0;
+            for (; index + 8 <= end; index += 8) {
+                word |= gather(bytes.getLong(index), bits) << (index - start) * bits;
+            }
+            for (; index < end; index++) {
+                word |= (long) values[index] << (index - start) * bits;
+            }
+            if (buffer.remaining() < 8) {
+                flush(channel, buffer);
+            }
+            buffer.putLong(word);
+            checksum = mix(checksum, word);
+        }
+        return checksum;
+    }
+
+    /**
+     * Reads longs packed by writePacked into an array.
+     *
+     * @return the checksum updated with the read longs
+     * @throws IOException if a value is bigger than the maximum
+     */
+    private static long readPacked(MappedByteBuffer buffer, byte[] values, int bits, int maximum, long checksum)
+            throws IOException {
+        int valuesPerWord = Long.SIZE / bits;
+        ByteBuffer bytes = ByteBuffer.wrap(values).order(ByteOrder.LITTLE_ENDIAN);
+        // Sets the highest bit of every byte bigger than the maximum. No byte carries into the next one, as no value of
+        // bits <= 4 bits gets to 0x80 by adding at most 0x7F.
+        long overflow = (0x80 - maximum - 1) * BYTE_LANES;
+        long invalid = 0;
+        for (int start = 0; start < values.length; start += valuesPerWord) {
+            int end = Math.min(start + valuesPerWord, values.length);
+            long word = buffer.getLong();
+            checksum = mix(checksum, word);
+            int index = start;
+            for (; index + 8 <= end; index += 8) {
+                long spread = spread(word >>> (index - start) * bits, bits);
+                // Only checked once the whole array is read, which keeps this loop free of branches.
+                invalid |= spread + overflow;
+                bytes.putLong(index, spread);
+            }
+            for (; index < end; index++) {
+                int value = (int) (word >>> (index - start) * bits) & ((1 << bits) - 1);
+                invalid |= maximum - value < 0 ? 0x80 : 0;
+                values[index] = (byte) value;
+            }
+        }
+        if ((invalid & 0x80 * BYTE_LANES) != 0) {
+            throw new IOException("A tile has an invalid value.");
+        }
+        return checksum;
+    }
+
+    /**
+     * Moves the lowest eight values of the specified number of bits of a long each to its own byte.
+     */
+    private static long spread(long word, int bits) {
+        long x = word & (1L << 8 * bits) - 1;
+        x = (x | x << 32 - 4 * bits) & ((1L << 4 * bits) - 1) * 0x0000000100000001L;
+        x = (x | x << 16 - 2 * bits) & ((1L << 2 * bits) - 1) * 0x0001000100010001L;
+        return (x | x << 8 - bits) & ((1L << bits) - 1) * BYTE_LANES;
+    }
+
+    /**
+     * The inverse of spread: packs the values of the specified number of bits of eight bytes into the lowest bits.
+     */
+    private static long gather(long bytes, int bits) {
+        long x = bytes & ((1L << bits) - 1) * BYTE_LANES;
+        x = (x | x >>> 8 - bits) & ((1L << 2 * bits) - 1) * 0x0001000100010001L;
+        x = (x | x >>> 16 - 2 * bits) & ((1L << 4 * bits) - 1) * 0x0000000100000001L;
+        return (x | x >>> 32 - 4 * bits) & (1L << 8 * bits) - 1;
+    }
+
+}
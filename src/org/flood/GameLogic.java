@@ -0,0 +1,457 @@
+package org.flood;
+
+import org.flood.algorithms.InitializationAlgorithm;
+
+import java.awt.Rectangle;
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * GameLogic class that makes the moves of a game on a thread of its own, so that the Event Dispatch Thread never waits
+ * for a flood or for a new board to be generated.
+ * <p/>
+ * Requests are queued and carried out in order, so clicks made while a flood or a new board is being computed are made
+ * after it. After every change the state of the board is published as a BoardSnapshot. There are two snapshots: the
+ * published one, which is read by the user interface, and the other one, into which the next state is copied. Only
+ * the tiles changed since the other snapshot was last published are copied into it, so publishing costs about as much
+ * as the move did.
+ * <p/>
+ * The FloodEngine, and anything it owns, is only touched by the thread of the GameLogic.
+ */
+final class GameLogic {
+
+    /**
+     * The interface of the objects told about the results of a GameLogic. The methods are called on the thread of the
+     * GameLogic.
+     */
+    interface Listener {
+
+        /**
+         * Called after a new state is published.
+         *
+         * @param snapshot     the published BoardSnapshot
+         * @param changedTiles the bounding box, in tiles, of the tiles that changed or null if no tile changed
+         * @param endedGame    whether or not a move flooded the last tiles of the board
+         */
+        void snapshotPublished(BoardSnapshot snapshot, Rectangle changedTiles, boolean endedGame);
+
+        /**
+         * Called with the tiles that a flood starting at (i, j) would hit, as requested by select.
+         *
+         * @param i         the i coordinate
+         * @param j         the j coordinate
+         * @param selection the indices of the tiles, which must not be modified
+         * @param version   the version of the published state in which these are the tiles
+         */
+        void selectionFound(int i, int j, int[] selection, long version);
+
+    }
+
+    /**
+     * The interface of the objects told whether a game was loaded by load. The methods are called on the thread of the
+     * GameLogic.
+     */
+    interface LoadListener {
+
+        /**
+         * Called after the loaded game replaced the game being played.
+         *
+         * @param boardCode the BoardCode of the loaded game
+         */
+        void gameLoaded(BoardCode boardCode);
+
+        /**
+         * Called if the game could not be loaded, in which case the game being played is kept.
+         *
+         * @param message why the game could not be loaded
+         */
+        void loadFailed(String message);
+
+    }
+
+    /**
+     * The interface of the objects told that a request which is not waited for, such as saving the game, failed. The
+     * method is called on the thread of the GameLogic.
+     */
+    interface FailureListener {
+
+        /**
+         * Called if the request failed.
+         *
+         * @param message why the request failed
+         */
+        void failed(String message);
+
+    }
+
+    private final ExecutorService executor;
+    private final Listener listener;
+    private FloodEngine engine;
+    private MoveJournal journal;
+    private RegionListener regionListener;
+    private volatile BoardSnapshot published;
+    // The snapshot the next state is copied into, null if it must be created, and the tiles it misses.
+    private BoardSnapshot next;
+    private Rectangle nextMissing;
+    private long version;
+    // Shown by the PerformanceOverlay. Undoing or redoing a flood keeps these of the last flood started.
+    private long lastFloodDuration;
+    private int lastFloodTiles;
+
+    /**
+     * Creates a GameLogic that continues the game of a FloodEngine, which must not be used by anything else after.
+     *
+     * @param engine   the FloodEngine
+     * @param listener the Listener told about the results
+     */
+    GameLogic(FloodEngine engine, Listener listener) {
+        this.engine = engine;
+        this.listener = listener;
+        ThreadFactory threadFactory = new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "Game Logic");
+                thread.setDaemon(true);
+                return thread;
+            }
+        };
+        executor = Executors.newSingleThreadExecutor(threadFactory);
+        // The first state is published right away, so that there always is a snapshot to paint.
+        published = new BoardSnapshot(engine.getWidth(), engine.getHeight());
+        published.update(engine, getBoard(), ++version, lastFloodDuration, lastFloodTiles);
+    }
+
+    /**
+     * Returns the most recently published BoardSnapshot, which must only be read while holding its lock.
+     *
+     * @return a BoardSnapshot
+     */
+    BoardSnapshot getSnapshot() {
+        return published;
+    }
+
+    /**
+     * Queues a move starting a flood at (i, j). Coordinates outside of the board, as of clicks made while the board
+     * was being replaced by a smaller one, are ignored.
+     *
+     * @param i the i coordinate
+     * @param j the j coordinate
+     */
+    void startFlood(final int i, final int j) {
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                if (i < engine.getWidth() && j < engine.getHeight()) {
+                    boolean wasFlooded = engine.isFlooded();
+                    int oldWaterCount = engine.getWaterCount();
+                    long start = System.nanoTime();
+                    Rectangle changedTiles = engine.startFlood(i, j);
+                    lastFloodDuration = System.nanoTime() - start;
+                    lastFloodTiles = engine.getWaterCount() - oldWaterCount;
+                    publish(changedTiles, !wasFlooded && engine.isFlooded());
+                }
+            }
+        });
+    }
+
+    /**
+     * Queues taking back the last move, if there is one that can be undone by then.
+     */
+    void undo() {
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                if (engine.canUndo()) {
+                    publish(engine.undo(), false);
+                }
+            }
+        });
+    }
+
+    /**
+     * Queues making again the last move that was undone, if there is one by then.
+     */
+    void redo() {
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                if (engine.canRedo()) {
+                    publish(engine.redo(), false);
+                }
+            }
+        });
+    }
+
+    /**
+     * Queues a new game with a new seed.
+     *
+     * @param initializationAlgorithm the InitializationAlgorithm used to fill the board
+     */
+    void reinitialize(final InitializationAlgorithm initializationAlgorithm) {
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                engine.setInitializationAlgorithm(initializationAlgorithm);
+                engine.reinitialize();
+                publish(getBoard(), false);
+            }
+        });
+    }
+
+    /**
+     * Queues a new game on the board of a BoardCode, which may have other dimensions than the current board.
+     *
+     * @param boardCode the BoardCode
+     */
+    void reinitialize(final BoardCode boardCode) {
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                if (boardCode.getWidth() == engine.getWidth() && boardCode.getHeight() == engine.getHeight()) {
+                    engine.reinitialize(boardCode);
+                    publish(getBoard(), false);
+                } else {
+                    replaceEngine(new FloodEngine(boardCode));
+                }
+            }
+        });
+    }
+
+    /**
+     * Queues a new game on a board of the specified dimensions, unless the board already has them by then.
+     *
+     * @param width                   how many tiles there are in a row
+     * @param height                  how many tiles there are in a column
+     * @param initializationAlgorithm the InitializationAlgorithm used to fill a new board
+     */
+    void resize(final int width, final int height, final InitializationAlgorithm initializationAlgorithm) {
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                if (engine.getWidth() != width || engine.getHeight() != height) {
+                    replaceEngine(new FloodEngine(width, height, initializationAlgorithm, FloodEngine.newSeed()));
+                }
+            }
+        });
+    }
+
+    /**
+     * Queues loading a game saved to a file, which replaces the game being played if it is loaded. Reading and decoding
+     * a big board takes long, so it is done on the thread of this GameLogic as well.
+     *
+     * @param file         the File of the saved game
+     * @param loadListener the LoadListener told whether the game was loaded
+     */
+    void load(final File file, final LoadListener loadListener) {
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                FloodEngine newEngine;
+                try {
+                    newEngine = FloodEngine.load(file);
+                } catch (IOException exception) {
+                    loadListener.loadFailed(exception.getMessage());
+                    return;
+                }
+                replaceEngine(newEngine);
+                loadListener.gameLoaded(newEngine.getBoardCode());
+            }
+        });
+    }
+
+    /**
+     * Makes a FloodEngine the one of the game being played, moving the MoveJournal and the RegionListener to it.
+     */
+    private void replaceEngine(FloodEngine newEngine) {
+        engine.setJournal(null);
+        engine.setRegionListener(null);
+        engine = newEngine;
+        engine.setJournal(journal);
+        engine.setRegionListener(regionListener);
+        publish(getBoard(), false);
+    }
+
+    /**
+     * Queues setting the RegionListener told about the regions of the board, which is moved to any new board.
+     *
+     * @param newRegionListener a RegionListener or null to stop telling
+     */
+    void setRegionListener(final RegionListener newRegionListener) {
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                regionListener = newRegionListener;
+                engine.setRegionListener(newRegionListener);
+            }
+        });
+    }
+
+    /**
+     * Queues setting the MoveJournal into which the moves are recorded and closing the previous one, if there was one.
+     * The moves queued before are recorded into the previous MoveJournal.
+     *
+     * @param newJournal      a MoveJournal or null to stop recording
+     * @param failureListener the FailureListener told if the previous MoveJournal could not be closed
+     */
+    void setJournal(final MoveJournal newJournal, final FailureListener failureListener) {
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    replaceJournal(newJournal);
+                } catch (IOException exception) {
+                    failureListener.failed(exception.getMessage());
+                }
+            }
+        });
+    }
+
+    /**
+     * Stops recording the moves and closes the MoveJournal, if there is one, after the moves queued before are
+     * recorded. Waits for it, so this is meant for a shutdown hook, which may call it from any thread as the
+     * MoveJournals are only touched by the thread of this GameLogic.
+     *
+     * @throws IOException if the MoveJournal could not be closed
+     */
+    void closeJournal() throws IOException {
+        call(new Callable<Void>() {
+            @Override
+            public Void call() throws IOException {
+                replaceJournal(null);
+                return null;
+            }
+        });
+    }
+
+    private void replaceJournal(MoveJournal newJournal) throws IOException {
+        MoveJournal oldJournal = journal;
+        journal = newJournal;
+        engine.setJournal(newJournal);
+        if (oldJournal != null) {
+            oldJournal.close();
+        }
+    }
+
+    /**
+     * Queues saving the game to a file, after the moves queued before are made.
+     *
+     * @param file            the File
+     * @param failureListener the FailureListener told if the file could not be written
+     */
+    void save(final File file, final FailureListener failureListener) {
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    engine.save(file);
+                } catch (IOException exception) {
+                    failureListener.failed(exception.getMessage());
+                }
+            }
+        });
+    }
+
+    /**
+     * Queues finding the tiles that a flood starting at (i, j) would hit. These are given to the Listener.
+     *
+     * @param i the i coordinate
+     * @param j the j coordinate
+     */
+    void select(final int i, final int j) {
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                if (i < engine.getWidth() && j < engine.getHeight()) {
+                    listener.selectionFound(i, j, engine.getSharedSelection(i, j), version);
+                }
+            }
+        });
+    }
+
+    /**
+     * Waits until every request queued before is carried out.
+     *
+     * @throws InterruptedException if the current thread is interrupted while waiting
+     */
+    void await() throws InterruptedException {
+        try {
+            executor.submit(new Runnable() {
+                @Override
+                public void run() {
+                    // Only waited for.
+                }
+            }).get();
+        } catch (ExecutionException exception) {
+            throw new AssertionError(exception);
+        }
+    }
+
+    /**
+     * Runs a Callable on the thread of this GameLogic and waits for it. The Callable is submitted once, and an interrupt
+     * only makes this wait again for the same run.
+     */
+    private <T> T call(Callable<T> callable) throws IOException {
+        Future<T> future = executor.submit(callable);
+        boolean interrupted = false;
+        try {
+            while (true) {
+                try {
+                    return future.get();
+                } catch (InterruptedException exception) {
+                    interrupted = true;
+                }
+            }
+        } catch (ExecutionException exception) {
+            if (exception.getCause() instanceof IOException) {
+                throw (IOException) exception.getCause();
+            }
+            throw new RuntimeException(exception.getCause());
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Returns the whole board, in tiles.
+     */
+    private Rectangle getBoard() {
+        return new Rectangle(0, 0, engine.getWidth(), engine.getHeight());
+    }
+
+    /**
+     * Copies the current state into the snapshot that is not published and publishes it. The snapshot that was
+     * published until then becomes the next one.
+     */
+    private void publish(Rectangle changedTiles, boolean endedGame) {
+        Rectangle missing = nextMissing;
+        if (next != null && (next.getWidth() != engine.getWidth() || next.getHeight() != engine.getHeight())) {
+            next = null; // The board was replaced by one of other dimensions.
+        }
+        if (next == null) {
+            next = new BoardSnapshot(engine.getWidth(), engine.getHeight());
+            missing = getBoard();
+        } else if (changedTiles != null) {
+            missing = missing == null ? changedTiles : missing.union(changedTiles);
+        }
+        // Waits for the user interface if it still reads this snapshot, which it only does while painting a frame.
+        next.update(engine, missing, ++version, lastFloodDuration, lastFloodTiles);
+        BoardSnapshot snapshot = next;
+        next = published;
+        published = snapshot;
+        nextMissing = changedTiles;
+        if (next.getWidth() != engine.getWidth() || next.getHeight() != engine.getHeight()) {
+            // A snapshot of a board of other dimensions is dropped, so that it does not keep its memory alive.
+            next = null;
+        }
+        listener.snapshotPublished(snapshot, changedTiles, endedGame);
+    }
+
+}
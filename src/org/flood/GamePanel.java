@@ -1,29 +1,94 @@
 package org.flood;
 
+import org.flood.metrics.GameEvents;
+import org.flood.metrics.GameMetrics;
+
 import javax.swing.*;
 import java.awt.*;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
-import java.util.ArrayList;
+import java.awt.event.MouseWheelEvent;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.util.BitSet;
+
+import static org.flood.GameData.STATUS_BAR_HEIGHT;
 
 /**
  * The panel added into the Game.
  * <p/>
+ * The moves are made by a GameLogic on a thread of its own. The panel only queues them and paints the BoardSnapshots
+ * the GameLogic publishes.
+ * <p/>
  * Created by Bernardo on 23/10/2014.
  */
 class GamePanel extends JPanel {
 
-    public static final int PEOPLE_SQUARE_SIDE = 2;
     static final String END_GAME_TITLE = "Flood complete!";
     static final String END_GAME_MESSAGE = "Everything was flooded.\nPlay again?";
     private static final int MAGIC_FONT_BORDER = 4;
+    private static final int[] NO_SELECTION = new int[0];
+    // How many tiles a notch of the mouse wheel scrolls.
+    private static final int TILES_PER_NOTCH = 3;
+    // How often the PerformanceOverlay is repainted when nothing else is, so that the heap used and the rate follow.
+    private static final int OVERLAY_REFRESH_DELAY = 500;
+    // The tint of each level of a GainMap, from white and faint for small gains to purple and strong for big ones.
+    private static final Color[] GAIN_TINTS = new Color[GainMap.MAXIMUM_LEVEL + 1];
+
+    static {
+        for (int level = 1; level <= GainMap.MAXIMUM_LEVEL; level++) {
+            int step = level - 1;
+            int steps = GainMap.MAXIMUM_LEVEL - 1;
+            int redAndBlue = 255 - 127 * step / steps;
+            GAIN_TINTS[level] = new Color(redAndBlue, 255 - 255 * step / steps, redAndBlue, 96 + 128 * step / steps);
+        }
+    }
+
     private int tileSide;
-    private int tilesPerRow;
-    private int totalTiles;
+    private int boardWidth;
+    private int boardHeight;
+    // The position of the top left corner of the viewport on the board, in pixels.
+    private int viewX;
+    private int viewY;
     private HighlightMode highlightMode;
-    private TileMatrix tileMatrix;
+    // Makes the moves on a thread of its own and publishes the snapshots painted by this panel.
+    private final GameLogic logic;
+    // Whether the moves are being recorded. The MoveJournal itself is owned by the GameLogic.
+    private boolean recordingJournal;
     private Configuration configuration;
-    private int mouseClicks = 0;
+    // Where the mouse is, null if it is not over the panel.
+    private Point mousePoint;
+    // Where the mouse was when the board was last dragged, null if it is not being dragged.
+    private Point dragPoint;
+    // The tile the mouse is over, -1 if there is none.
+    private int hoveredI = -1;
+    private int hoveredJ = -1;
+    // The indices of the highlighted tiles, a mark for each one of them and their bounds, in tiles.
+    private int[] selection = NO_SELECTION;
+    private final BitSet selected = new BitSet();
+    private Rectangle selectionBounds;
+    // The sprites of the tiles, only rendered again when the Theme or the tile side changes.
+    private TileAtlas atlas;
+    // The visible tiles, painted 'up', and which tiles these are. Only the tiles that change are rendered again.
+    private BufferedImage viewImage;
+    private Rectangle viewTiles;
+    // How many tiles were drawn since the last frame was painted.
+    private int drawnTiles;
+    private final PerformanceOverlay overlay = new PerformanceOverlay();
+    // Repaints the overlay while it is shown, null if it is not.
+    private Timer overlayTimer;
+    // The gains painted by the gain highlight modes, only following the engine while one of these modes is set.
+    private final GainMap gainMap = new GainMap(new Runnable() {
+        @Override
+        public void run() {
+            // Called on the thread of the GainMap, which is fine as repaint may be called from any thread.
+            repaint(0, 0, getViewportWidth(), getViewportHeight());
+        }
+    });
 
     /**
      * The default constructor.
@@ -31,39 +96,102 @@ class GamePanel extends JPanel {
     public GamePanel(Configuration configuration) {
         super();
         this.configuration = configuration;
-        tileMatrix = new TileMatrix(configuration);
         setBackground(Color.BLACK);
         highlightMode = HighlightMode.NONE;
+        // The first board is generated right away, so that there is always a board to paint.
+        FloodEngine engine = new FloodEngine(configuration.getBoardWidth(), configuration.getBoardHeight(),
+                configuration.getInitializationAlgorithm(), FloodEngine.newSeed());
+        logic = new GameLogic(engine, new GameLogic.Listener() {
+            @Override
+            public void snapshotPublished(BoardSnapshot snapshot, final Rectangle changedTiles,
+                                          final boolean endedGame) {
+                SwingUtilities.invokeLater(new Runnable() {
+                    @Override
+                    public void run() {
+                        showChanges(changedTiles);
+                        if (endedGame) {
+                            endGameOptionPane();
+                        }
+                    }
+                });
+            }
+
+            @Override
+            public void selectionFound(final int i, final int j, final int[] selection, final long version) {
+                SwingUtilities.invokeLater(new Runnable() {
+                    @Override
+                    public void run() {
+                        setFoundSelection(i, j, selection, version);
+                    }
+                });
+            }
+        });
         resize(configuration);
         // Set the font used to write the status.
         setFont(new Font(Font.SANS_SERIF, Font.PLAIN, 14));
 
-        this.addMouseListener(new MouseAdapter() {
+        MouseAdapter mouseAdapter = new MouseAdapter() {
             @Override
             public void mousePressed(MouseEvent e) {
-                super.mouseClicked(e);
+                super.mousePressed(e);
+                if (!SwingUtilities.isLeftMouseButton(e)) {
+                    // The other buttons drag the board.
+                    dragPoint = e.getPoint();
+                    return;
+                }
                 int[] c = getMouseCoordinates(e.getPoint());
-                if (c[0] >= 0 && c[0] < tilesPerRow && c[1] >= 0 && c[1] < tilesPerRow) {
-                    mouseClicks++;
-                    tileMatrix.startFlood(c[0], c[1]);
-                    repaint();
-                    if (tileMatrix.getWaterCount() == totalTiles) {
-                        endGameOptionPane();
-                    }
+                if (isValidCoordinatePair(c)) {
+                    // The changes are shown once the GameLogic publishes them.
+                    logic.startFlood(c[0], c[1]);
                 }
             }
-        });
 
-        this.addMouseMotionListener(new MouseAdapter() {
+            @Override
+            public void mouseReleased(MouseEvent e) {
+                super.mouseReleased(e);
+                dragPoint = null;
+            }
+
+            @Override
+            public void mouseExited(MouseEvent e) {
+                super.mouseExited(e);
+                mousePoint = null;
+                updateHoveredTile();
+            }
+
             @Override
             public void mouseMoved(MouseEvent e) {
                 super.mouseMoved(e);
-                if (highlightMode != HighlightMode.NONE) {
-                    // TODO: check if the selected tile changed before invoking repaint(), to improve performance.
-                    repaint();
+                mousePoint = e.getPoint();
+                updateHoveredTile();
+            }
+
+            @Override
+            public void mouseDragged(MouseEvent e) {
+                super.mouseDragged(e);
+                mousePoint = e.getPoint();
+                if (dragPoint != null) {
+                    scrollTo(viewX + dragPoint.x - e.getX(), viewY + dragPoint.y - e.getY());
+                    dragPoint = e.getPoint();
                 }
             }
-        });
+
+            @Override
+            public void mouseWheelMoved(MouseWheelEvent e) {
+                super.mouseWheelMoved(e);
+                int notches = e.getWheelRotation();
+                if (e.isControlDown()) {
+                    zoom(-notches, e.getPoint());
+                } else if (e.isShiftDown()) {
+                    scrollTo(viewX + notches * TILES_PER_NOTCH * tileSide, viewY);
+                } else {
+                    scrollTo(viewX, viewY + notches * TILES_PER_NOTCH * tileSide);
+                }
+            }
+        };
+        this.addMouseListener(mouseAdapter);
+        this.addMouseMotionListener(mouseAdapter);
+        this.addMouseWheelListener(mouseAdapter);
     }
 
     public Theme getTheme() {
@@ -71,13 +199,183 @@ class GamePanel extends JPanel {
     }
 
     /**
-     * Updates all customizable variables.
+     * Updates all customizable variables and starts a new game on a board of the configured size. A game that already
+     * has the configured size, such as one that was just loaded, is kept. The new board is generated in the background,
+     * until then the panel shows that it is being generated.
      */
     void resize(Configuration configuration) {
-        tileMatrix = new TileMatrix(configuration);
-        tilesPerRow = configuration.getGameSize().tilesPerRow;
-        totalTiles = tilesPerRow * tilesPerRow;
-        tileSide = configuration.getGameSize().tileSide;
+        boardWidth = configuration.getBoardWidth();
+        boardHeight = configuration.getBoardHeight();
+        logic.resize(boardWidth, boardHeight, configuration.getInitializationAlgorithm());
+        tileSide = configuration.getTileSide();
+        viewX = 0;
+        viewY = 0;
+        atlas = null;
+        viewImage = null;
+        setHoveredTile(-1, -1);
+        updateSelection();
+    }
+
+    /**
+     * Returns the size of the panel needed to show the whole board, up to GameData.MAXIMUM_VIEWPORT_SIDE in each
+     * direction, plus the status bar.
+     *
+     * @return a Dimension, in pixels
+     */
+    java.awt.Dimension getPreferredPanelSize() {
+        int width = Math.min(boardWidth * tileSide, GameData.MAXIMUM_VIEWPORT_SIDE);
+        int height = Math.min(boardHeight * tileSide, GameData.MAXIMUM_VIEWPORT_SIDE);
+        return new java.awt.Dimension(width, height + STATUS_BAR_HEIGHT);
+    }
+
+    private int getViewportWidth() {
+        return getWidth();
+    }
+
+    private int getViewportHeight() {
+        return Math.max(0, getHeight() - STATUS_BAR_HEIGHT);
+    }
+
+    /**
+     * Moves the viewport so that its top left corner is at (x, y) on the board, in pixels. The viewport never leaves
+     * the board.
+     */
+    private void scrollTo(int x, int y) {
+        if (moveViewport(x, y)) {
+            updateHoveredTile();
+            repaint(0, 0, getViewportWidth(), getViewportHeight());
+        }
+    }
+
+    /**
+     * Moves the viewport as close as possible to (x, y) without leaving the board.
+     *
+     * @return whether or not the viewport moved
+     */
+    private boolean moveViewport(int x, int y) {
+        x = Math.max(0, Math.min(x, boardWidth * tileSide - getViewportWidth()));
+        y = Math.max(0, Math.min(y, boardHeight * tileSide - getViewportHeight()));
+        if (x == viewX && y == viewY) {
+            return false;
+        }
+        viewX = x;
+        viewY = y;
+        return true;
+    }
+
+    /**
+     * Changes the side of the tiles, keeping the point of the board under the specified point of the panel in place.
+     *
+     * @param steps how many steps to zoom in, negative to zoom out
+     * @param point the point that stays in place, in pixels
+     */
+    private void zoom(int steps, Point point) {
+        int side = tileSide;
+        for (int k = 0; k < Math.abs(steps); k++) {
+            // Each step changes the side by an eighth, so that zooming feels the same at any level.
+            int change = Math.max(1, side / 8);
+            side += steps > 0 ? change : -change;
+        }
+        side = Math.max(GameData.MINIMUM_TILE_SIDE, Math.min(GameData.MAXIMUM_TILE_SIDE, side));
+        if (side != tileSide) {
+            long boardX = (long) (viewX + point.x) * side / tileSide;
+            long boardY = (long) (viewY + point.y) * side / tileSide;
+            tileSide = side;
+            atlas = null;
+            viewImage = null;
+            moveViewport((int) boardX - point.x, (int) boardY - point.y);
+            updateHoveredTile();
+            repaint();
+        }
+    }
+
+    /**
+     * Updates the hovered tile after the mouse or the board moved.
+     */
+    private void updateHoveredTile() {
+        int[] c = getMouseCoordinates(mousePoint);
+        setHoveredTile(c[0], c[1]);
+    }
+
+    /**
+     * Sets the tile the mouse is over. The selection is only updated (and repainted) if the hovered tile changed.
+     *
+     * @param i the i coordinate of the tile or -1 if the mouse is not over any tile
+     * @param j the j coordinate of the tile or -1 if the mouse is not over any tile
+     */
+    private void setHoveredTile(int i, int j) {
+        if (i != hoveredI || j != hoveredJ) {
+            hoveredI = i;
+            hoveredJ = j;
+            updateSelection();
+        }
+    }
+
+    /**
+     * Recomputes which tiles are highlighted. The tiles a flood would hit are asked to the GameLogic, and the current
+     * selection is kept until they are found.
+     */
+    private void updateSelection() {
+        if (highlightMode == HighlightMode.FULL && hoveredI != -1 && hoveredJ != -1) {
+            logic.select(hoveredI, hoveredJ);
+        } else if (highlightMode == HighlightMode.SELECTED_TILE && hoveredI != -1 && hoveredJ != -1) {
+            setSelection(new int[]{hoveredJ * boardWidth + hoveredI});
+        } else {
+            setSelection(NO_SELECTION);
+        }
+    }
+
+    /**
+     * Highlights the tiles found by the GameLogic, unless the mouse or the board changed since they were asked for, in
+     * which case newer ones were asked for.
+     */
+    private void setFoundSelection(int i, int j, int[] foundSelection, long version) {
+        if (highlightMode != HighlightMode.FULL || i != hoveredI || j != hoveredJ) {
+            return;
+        }
+        BoardSnapshot snapshot = logic.getSnapshot();
+        boolean current;
+        // The GameLogic updates the snapshot while holding its lock.
+        synchronized (snapshot) {
+            current = version == snapshot.getVersion() && isShowing(snapshot);
+        }
+        if (current) {
+            setSelection(foundSelection);
+        }
+    }
+
+    /**
+     * Marks the highlighted tiles. Repaints the bounds of the old and of the new selection.
+     */
+    private void setSelection(int[] newSelection) {
+        for (int index : selection) {
+            selected.clear(index);
+        }
+        Rectangle oldSelectionBounds = selectionBounds;
+        selection = newSelection;
+        selectionBounds = null;
+        if (selection.length != 0) {
+            int minI = boardWidth;
+            int minJ = boardHeight;
+            int maxI = 0;
+            int maxJ = 0;
+            for (int index : selection) {
+                selected.set(index);
+                int i = index % boardWidth;
+                int j = index / boardWidth;
+                minI = Math.min(minI, i);
+                minJ = Math.min(minJ, j);
+                maxI = Math.max(maxI, i);
+                maxJ = Math.max(maxJ, j);
+            }
+            selectionBounds = new Rectangle(minI, minJ, maxI - minI + 1, maxJ - minJ + 1);
+        }
+        if (oldSelectionBounds != null) {
+            repaint(toPixels(oldSelectionBounds));
+        }
+        if (selectionBounds != null) {
+            repaint(toPixels(selectionBounds));
+        }
     }
 
     /**
@@ -94,60 +392,319 @@ class GamePanel extends JPanel {
 
     /**
      * @param mousePosition the point the mouse is pointing to.
-     * @return an array of two integers representing the mouse coordinates on the grid.
+     * @return an array of two integers representing the mouse coordinates on the grid, -1 if it is not over a tile.
      */
     private int[] getMouseCoordinates(Point mousePosition) {
-        int[] coordinates = new int[2];
-        if (mousePosition != null) {
-            coordinates[0] = (int) (mousePosition.getX() / tileSide);
-            coordinates[1] = (int) (mousePosition.getY() / tileSide);
-        } else {
-            coordinates[0] = coordinates[1] = -1;
+        int[] coordinates = new int[]{-1, -1};
+        if (mousePosition != null && mousePosition.x >= 0 && mousePosition.x < getViewportWidth() &&
+                mousePosition.y >= 0 && mousePosition.y < getViewportHeight()) {
+            int i = (mousePosition.x + viewX) / tileSide;
+            int j = (mousePosition.y + viewY) / tileSide;
+            if (i < boardWidth && j < boardHeight) {
+                coordinates[0] = i;
+                coordinates[1] = j;
+            }
         }
         return coordinates;
     }
 
+    /**
+     * Converts a rectangle in tiles to a rectangle in pixels of the panel.
+     */
+    private Rectangle toPixels(Rectangle tiles) {
+        int x = tiles.x * tileSide - viewX;
+        int y = tiles.y * tileSide - viewY;
+        return new Rectangle(x, y, tiles.width * tileSide, tiles.height * tileSide);
+    }
+
+    private void repaintStatusBar() {
+        repaint(0, getHeight() - STATUS_BAR_HEIGHT, getWidth(), STATUS_BAR_HEIGHT);
+    }
+
+    /**
+     * Discards the cached image of the board and repaints the panel.
+     */
+    void redraw() {
+        viewImage = null;
+        repaint();
+    }
+
+    /**
+     * Discards the sprites of the old Theme and repaints the panel with the current one.
+     */
+    void updateTheme() {
+        atlas = null;
+        redraw();
+    }
+
+    /**
+     * Returns the tiles that are at least partially inside the viewport.
+     *
+     * @return a Rectangle, in tiles, empty if the viewport is empty
+     */
+    private Rectangle getVisibleTiles() {
+        if (getViewportWidth() == 0 || getViewportHeight() == 0) {
+            return new Rectangle();
+        }
+        int firstI = viewX / tileSide;
+        int firstJ = viewY / tileSide;
+        int lastI = Math.min(boardWidth - 1, (viewX + getViewportWidth() - 1) / tileSide);
+        int lastJ = Math.min(boardHeight - 1, (viewY + getViewportHeight() - 1) / tileSide);
+        return new Rectangle(firstI, firstJ, lastI - firstI + 1, lastJ - firstJ + 1);
+    }
+
+    /**
+     * Renders the specified tiles into the cached image of the visible tiles. All tiles are rendered 'up'. Tiles that
+     * are not in the image are ignored.
+     *
+     * @param tiles the rectangle of tiles to be rendered, in tiles
+     */
+    private void updateViewImage(Rectangle tiles) {
+        if (viewImage == null) {
+            return; // The whole image will be rendered when it is needed.
+        }
+        BoardSnapshot snapshot = logic.getSnapshot();
+        synchronized (snapshot) {
+            if (isShowing(snapshot)) {
+                updateViewImage(snapshot, tiles);
+            }
+        }
+    }
+
+    private void updateViewImage(BoardSnapshot snapshot, Rectangle tiles) {
+        Rectangle update = tiles.intersection(viewTiles);
+        Graphics2D g = viewImage.createGraphics();
+        try {
+            for (int j = update.y; j < update.y + update.height; j++) {
+                for (int i = update.x; i < update.x + update.width; i++) {
+                    paintTile(g, snapshot, i, j, true, (i - viewTiles.x) * tileSide, (j - viewTiles.y) * tileSide);
+                }
+            }
+        } finally {
+            g.dispose();
+        }
+    }
+
+    /**
+     * Returns whether or not a snapshot is of the board this panel shows, which it is not while a board of another size
+     * is being generated.
+     */
+    private boolean isShowing(BoardSnapshot snapshot) {
+        return snapshot.getWidth() == boardWidth && snapshot.getHeight() == boardHeight;
+    }
+
+    /**
+     * Makes sure the cached image of the visible tiles exists, covers the visible tiles and is up to date. The image is
+     * only as big as the viewport, so its cost does not depend on the size of the board.
+     */
+    private void ensureViewImage(BoardSnapshot snapshot) {
+        if (atlas == null) {
+            atlas = new TileAtlas(configuration.getTheme(), tileSide, getGraphicsConfiguration());
+            viewImage = null;
+        }
+        Rectangle visibleTiles = getVisibleTiles();
+        if (viewImage == null || !visibleTiles.equals(viewTiles)) {
+            int width = Math.max(1, visibleTiles.width * tileSide);
+            int height = Math.max(1, visibleTiles.height * tileSide);
+            // The image is reused while it is big enough, so that scrolling does not allocate.
+            if (viewImage == null || viewImage.getWidth() < width || viewImage.getHeight() < height) {
+                GraphicsConfiguration graphicsConfiguration = getGraphicsConfiguration();
+                if (graphicsConfiguration != null) {
+                    viewImage = graphicsConfiguration.createCompatibleImage(width, height);
+                } else {
+                    viewImage = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+                }
+            }
+            viewTiles = visibleTiles;
+            updateViewImage(snapshot, visibleTiles);
+        }
+    }
+
+    /**
+     * Paints the tile at (i, j).
+     *
+     * @param g        the Graphics object used to paint
+     * @param snapshot the BoardSnapshot the tile is read from
+     * @param i        the i coordinate of the tile
+     * @param j        the j coordinate of the tile
+     * @param raised   whether the tile should be painted 'up' or 'down'
+     * @param x        the x coordinate of the top left corner of the tile, in pixels
+     * @param y        the y coordinate of the top left corner of the tile, in pixels
+     */
+    private void paintTile(Graphics g, BoardSnapshot snapshot, int i, int j, boolean raised, int x, int y) {
+        TileType type = snapshot.getTileType(i, j);
+        int population = snapshot.getPopulation(i, j);
+        int layout = snapshot.getHumanLayout(i, j);
+        atlas.paintTile(g, type, population, layout, raised, x, y);
+        drawnTiles++;
+    }
+
     @Override
     protected void paintComponent(Graphics g) {
+        if (GameMetrics.isInstrumented()) {
+            Object event = GameEvents.beginPaint();
+            long start = System.nanoTime();
+            paintFrame(g);
+            long duration = System.nanoTime() - start;
+            if (GameMetrics.isRecording()) {
+                GameMetrics.recordFrame(duration, drawnTiles);
+            }
+            int visibleTiles = viewTiles != null ? viewTiles.width * viewTiles.height : 0;
+            GameEvents.endPaint(event, visibleTiles, drawnTiles);
+            if (overlayTimer != null) {
+                // The overlay is not part of the frame it measures.
+                overlay.recordFrame(duration);
+                paintOverlay(g);
+            }
+        } else {
+            paintFrame(g);
+        }
+        drawnTiles = 0;
+    }
+
+    private void paintOverlay(Graphics g) {
+        long lastFloodDuration;
+        int lastFloodTiles;
+        BoardSnapshot snapshot = logic.getSnapshot();
+        synchronized (snapshot) {
+            lastFloodDuration = snapshot.getLastFloodDuration();
+            lastFloodTiles = snapshot.getLastFloodTiles();
+        }
+        overlay.paint(g, 0, getOverlayY(), lastFloodDuration, lastFloodTiles);
+    }
+
+    /**
+     * Returns the y coordinate of the top of the PerformanceOverlay, which is right above the status bar.
+     */
+    private int getOverlayY() {
+        return Math.max(0, getViewportHeight() - PerformanceOverlay.HEIGHT);
+    }
+
+    boolean isShowingOverlay() {
+        return overlayTimer != null;
+    }
+
+    /**
+     * Shows or hides the PerformanceOverlay, which shows how long the frames and the floods take.
+     *
+     * @param showingOverlay whether or not the overlay should be shown
+     */
+    void setShowingOverlay(boolean showingOverlay) {
+        if (showingOverlay == isShowingOverlay()) {
+            return;
+        }
+        if (showingOverlay) {
+            overlay.reset();
+            overlayTimer = new Timer(OVERLAY_REFRESH_DELAY, new ActionListener() {
+                @Override
+                public void actionPerformed(ActionEvent e) {
+                    repaint(0, getOverlayY(), PerformanceOverlay.WIDTH, PerformanceOverlay.HEIGHT);
+                }
+            });
+            overlayTimer.start();
+            GameMetrics.startWatching();
+        } else {
+            overlayTimer.stop();
+            overlayTimer = null;
+            GameMetrics.stopWatching();
+        }
+        repaint();
+    }
+
+    private void paintFrame(Graphics g) {
         super.paintComponent(g);
-        int[] coordinates = getMouseCoordinates(getMousePosition());
-        ArrayList<Tile> selection = new ArrayList<Tile>();
-        if (isValidCoordinatePair(coordinates)) {
-            if (highlightMode == HighlightMode.SELECTED_TILE) {
-                selection.add(tileMatrix.getTile(coordinates[0], coordinates[1]));
-            } else if (highlightMode == HighlightMode.FULL) {
-                selection = tileMatrix.getSelection(coordinates[0], coordinates[1]);
-            }
-        }
-        for (int j = 0; j < tilesPerRow; j++) {
-            for (int i = 0; i < tilesPerRow; i++) {
-                g.setColor(configuration.getTheme().colors.get(tileMatrix.getTileType(i, j)));
-                // The selected tiles are 'down'. All the others are 'up'.
-                Tile currentTile = tileMatrix.getTile(i, j);
-                if (selection.contains(currentTile)) {
-                    g.fill3DRect(i * tileSide, j * tileSide, tileSide, tileSide, false);
-                } else {
-                    g.fill3DRect(i * tileSide, j * tileSide, tileSide, tileSide, true);
+        BoardSnapshot snapshot = logic.getSnapshot();
+        // Holding the lock keeps the GameLogic from copying the next state into this snapshot while it is painted.
+        synchronized (snapshot) {
+            if (!isShowing(snapshot)) {
+                paintGenerationStatus(g);
+                return;
+            }
+            ensureViewImage(snapshot);
+            if (!viewTiles.isEmpty()) {
+                // The board must not be painted over the status bar.
+                Graphics boardGraphics = g.create(0, 0, getViewportWidth(), getViewportHeight());
+                try {
+                    paintBoard(boardGraphics, snapshot);
+                } finally {
+                    boardGraphics.dispose();
                 }
-                if (!currentTile.isWater()) {
-                    g.setColor(Color.RED);
-                    for (Double[] human : currentTile.getPopulation().getHumans()) {
-                        int factor = tileSide - PEOPLE_SQUARE_SIDE - 1;
-                        if (factor < 1) {
-                            throw new AssertionError("tileSide is too small.");
-                        }
-                        int x = 1 + (int) (factor * human[0]);
-                        int y = 1 + (int) (factor * human[1]);
-                        g.fillRect(i * tileSide + x, j * tileSide + y, PEOPLE_SQUARE_SIDE, PEOPLE_SQUARE_SIDE);
-                    }
+            }
+            updateStatusBar(g, snapshot);
+        }
+    }
+
+    /**
+     * Paints the visible tiles. Only the tiles inside the area being painted are visited, so the cost of painting
+     * depends on the size of the viewport and not on the size of the board.
+     */
+    private void paintBoard(Graphics g, BoardSnapshot snapshot) {
+        // The cached image has all the tiles 'up'.
+        int left = viewTiles.x * tileSide - viewX;
+        int top = viewTiles.y * tileSide - viewY;
+        int width = viewTiles.width * tileSide;
+        int height = viewTiles.height * tileSide;
+        g.drawImage(viewImage, left, top, left + width, top + height, 0, 0, width, height, null);
+        // Only the selected tiles inside the area being painted are painted again, 'down'.
+        int firstI = viewTiles.x;
+        int firstJ = viewTiles.y;
+        int lastI = viewTiles.x + viewTiles.width - 1;
+        int lastJ = viewTiles.y + viewTiles.height - 1;
+        Rectangle clip = g.getClipBounds();
+        if (clip != null) {
+            firstI = Math.max(firstI, (clip.x + viewX) / tileSide);
+            firstJ = Math.max(firstJ, (clip.y + viewY) / tileSide);
+            lastI = Math.min(lastI, (clip.x + clip.width - 1 + viewX) / tileSide);
+            lastJ = Math.min(lastJ, (clip.y + clip.height - 1 + viewY) / tileSide);
+        }
+        if (firstI <= lastI) {
+            for (int j = firstJ; j <= lastJ; j++) {
+                int rowStart = j * boardWidth;
+                int index = selected.nextSetBit(rowStart + firstI);
+                while (index != -1 && index <= rowStart + lastI) {
+                    int i = index - rowStart;
+                    paintTile(g, snapshot, i, j, false, i * tileSide - viewX, j * tileSide - viewY);
+                    index = selected.nextSetBit(index + 1);
+                }
+            }
+            if (isShowingGains()) {
+                paintGains(g, firstI, firstJ, lastI, lastJ);
+            }
+        }
+    }
+
+    private boolean isShowingGains() {
+        return highlightMode == HighlightMode.TILE_GAIN || highlightMode == HighlightMode.HUMAN_GAIN;
+    }
+
+    /**
+     * Tints the tiles from (firstI, firstJ) to (lastI, lastJ) by the level of their gain. A run of tiles of the same
+     * level in a row is tinted at once, so a region is usually a few rectangles per row.
+     */
+    private void paintGains(Graphics g, int firstI, int firstJ, int lastI, int lastJ) {
+        byte[] levels = gainMap.getLevels();
+        if (levels.length != boardWidth * boardHeight) {
+            return; // The gains of this board are still being computed.
+        }
+        for (int j = firstJ; j <= lastJ; j++) {
+            int rowStart = j * boardWidth;
+            int i = firstI;
+            while (i <= lastI) {
+                int level = levels[rowStart + i];
+                int runStart = i;
+                while (i <= lastI && levels[rowStart + i] == level) {
+                    i++;
+                }
+                if (level != 0) {
+                    g.setColor(GAIN_TINTS[level]);
+                    g.fillRect(runStart * tileSide - viewX, j * tileSide - viewY, (i - runStart) * tileSide, tileSide);
                 }
             }
         }
-        updateStatusBar(g);
     }
 
     private boolean isValidCoordinatePair(int[] pair) {
-        return pair[0] != -1 && pair[0] < tilesPerRow && pair[1] != -1 && pair[1] < tilesPerRow;
+        return pair[0] != -1 && pair[1] != -1;
     }
 
     /**
@@ -155,25 +712,166 @@ class GamePanel extends JPanel {
      * a new panel size is set.
      */
     public void reinitialize() {
-        tileMatrix.reinitialize();
-        resetMouseClicks();
-        repaint();
+        logic.reinitialize(configuration.getInitializationAlgorithm());
     }
 
-    private void updateStatusBar(Graphics g) {
-        updateWaterStatistics(g);
-        updateHumanStatistics(g);
+    /**
+     * Starts a new game on the board of a BoardCode, erasing all the current progress made by the player. If the board
+     * does not have the current size, the configured size must be changed to it right after, which resizes the panel.
+     *
+     * @param boardCode the BoardCode
+     */
+    void reinitialize(BoardCode boardCode) {
+        logic.reinitialize(boardCode);
+    }
+
+    /**
+     * Returns the BoardCode of the game being shown.
+     */
+    BoardCode getBoardCode() {
+        BoardSnapshot snapshot = logic.getSnapshot();
+        synchronized (snapshot) {
+            return snapshot.getBoardCode();
+        }
+    }
+
+    /**
+     * Continues a game saved to a file, which is loaded on the thread of the GameLogic. If the loaded board does not
+     * have the current size, the configured size must be changed to it once it is loaded, which resizes the panel.
+     *
+     * @param file         the File of the saved game
+     * @param loadListener the GameLogic.LoadListener told whether the game was loaded, on the thread of the GameLogic
+     */
+    void load(File file, GameLogic.LoadListener loadListener) {
+        logic.load(file, loadListener);
+        setHoveredTile(-1, -1);
+    }
+
+    /**
+     * Takes back the last move, if there is one that can be undone once the moves before it are made.
+     */
+    void undo() {
+        logic.undo();
+    }
+
+    /**
+     * Makes again the last move that was undone, if there is one once the moves before it are made.
+     */
+    void redo() {
+        logic.redo();
+    }
+
+    /**
+     * Repaints the tiles changed by a move, the selection and the status bar. A change of the whole board, as when a
+     * new board is generated, repaints everything.
+     *
+     * @param changedTiles the bounding box, in tiles, of the changed tiles or null if no tile changed
+     */
+    private void showChanges(Rectangle changedTiles) {
+        if (changedTiles != null) {
+            if (changedTiles.x == 0 && changedTiles.y == 0 && changedTiles.width == boardWidth &&
+                    changedTiles.height == boardHeight) {
+                redraw();
+            } else {
+                updateViewImage(changedTiles);
+                repaint(toPixels(changedTiles));
+            }
+        }
+        updateSelection();
+        repaintStatusBar();
+    }
+
+    /**
+     * Waits until every queued move is made and its changes are shown. Must not be called on the Event Dispatch Thread.
+     *
+     * @throws InterruptedException if the current thread is interrupted while waiting
+     */
+    void awaitChanges() throws InterruptedException {
+        logic.await();
+        try {
+            SwingUtilities.invokeAndWait(new Runnable() {
+                @Override
+                public void run() {
+                    // Only waited for, after the changes queued before it are shown.
+                }
+            });
+        } catch (InvocationTargetException exception) {
+            throw new AssertionError(exception);
+        }
     }
 
-    private void updateWaterStatistics(Graphics g) {
+    /**
+     * Starts recording the moves into a MoveJournal, beginning with the game being played. Stops recording into the
+     * previous MoveJournal and closes it, if there was one.
+     *
+     * @param journal         the MoveJournal
+     * @param failureListener the GameLogic.FailureListener told if the previous MoveJournal could not be closed
+     */
+    void startJournal(MoveJournal journal, GameLogic.FailureListener failureListener) {
+        recordingJournal = true;
+        logic.setJournal(journal, failureListener);
+    }
+
+    /**
+     * Stops recording the moves and closes the MoveJournal, if there was one.
+     *
+     * @param failureListener the GameLogic.FailureListener told if the MoveJournal could not be closed
+     */
+    void stopJournal(GameLogic.FailureListener failureListener) {
+        if (recordingJournal) {
+            recordingJournal = false;
+            logic.setJournal(null, failureListener);
+        }
+    }
+
+    /**
+     * Closes the MoveJournal, if there is one, after the moves queued before are recorded. Unlike the other methods,
+     * this may be called from any thread, as by a shutdown hook.
+     *
+     * @throws IOException if the MoveJournal could not be closed
+     */
+    void closeJournal() throws IOException {
+        logic.closeJournal();
+    }
+
+    boolean isRecordingJournal() {
+        return recordingJournal;
+    }
+
+    /**
+     * Saves the game being played to a file, once the moves queued before are made, on the thread of the GameLogic.
+     *
+     * @param file            the File
+     * @param failureListener the GameLogic.FailureListener told if the file could not be written
+     */
+    void save(File file, GameLogic.FailureListener failureListener) {
+        logic.save(file, failureListener);
+    }
+
+    private void updateStatusBar(Graphics g, BoardSnapshot snapshot) {
+        updateWaterStatistics(g, snapshot);
+        updateHumanStatistics(g, snapshot);
+    }
+
+    /**
+     * Paints, in place of the status bar, that the board is being generated.
+     */
+    private void paintGenerationStatus(Graphics g) {
         g.setColor(Color.GREEN);
-        int water = tileMatrix.getWaterCount();
-        int total = totalTiles;
+        String status = "Generating a board of " + boardWidth + "x" + boardHeight + "...";
+        g.drawString(status, MAGIC_FONT_BORDER, getHeight() - MAGIC_FONT_BORDER);
+    }
+
+    private void updateWaterStatistics(Graphics g, BoardSnapshot snapshot) {
+        g.setColor(Color.GREEN);
+        int water = snapshot.getWaterCount();
+        int total = snapshot.getTileCount();
+        int mouseClicks = snapshot.getMoveCount();
         StringBuilder stringBuilder = new StringBuilder();
         // Water over total tiles fraction.
         stringBuilder.append(Integer.toString(water)).append('/').append(Integer.toString(total)).append(' ');
         // Water percentage.
-        stringBuilder.append('(').append(Utils.getPercentageString(water, totalTiles)).append(')');
+        stringBuilder.append('(').append(Utils.getPercentageString(water, total)).append(')');
         // Mouse click count.
         if (mouseClicks > 0) {
             stringBuilder.append(" after ");
@@ -186,24 +884,29 @@ class GamePanel extends JPanel {
         g.drawString(stringBuilder.toString(), MAGIC_FONT_BORDER, getHeight() - MAGIC_FONT_BORDER);
     }
 
-    private void updateHumanStatistics(Graphics g) {
+    private void updateHumanStatistics(Graphics g, BoardSnapshot snapshot) {
         g.setColor(Color.ORANGE);
-        int human = tileMatrix.getTotalPopulation();
+        int human = snapshot.getTotalPopulation();
         String humansRemaining = String.format("%d humans remaining.", human);
         int stringWidth = (int) g.getFontMetrics().getStringBounds(humansRemaining, g).getBounds2D().getWidth();
         g.drawString(humansRemaining, getWidth() - stringWidth - MAGIC_FONT_BORDER, getHeight() - MAGIC_FONT_BORDER);
     }
 
-    void resetMouseClicks() {
-        mouseClicks = 0;
-    }
-
     public HighlightMode getHighlightMode() {
         return highlightMode;
     }
 
     public void setHighlightMode(HighlightMode highlightMode) {
         this.highlightMode = highlightMode;
+        // The GainMap only follows the engine, and costs anything, while the gains are shown.
+        if (isShowingGains()) {
+            gainMap.setCountingHumans(highlightMode == HighlightMode.HUMAN_GAIN);
+            logic.setRegionListener(gainMap);
+        } else {
+            logic.setRegionListener(null);
+        }
+        updateSelection();
+        repaint();
     }
 
 }
@@ -11,4 +11,16 @@ public enum GameSize {
         this.tileSide = tileSide;
     }
 
+    /**
+     * Returns the GameSize of a board of the specified dimensions or null if no GameSize has them.
+     */
+    static GameSize forDimensions(int width, int height) {
+        for (GameSize gameSize : values()) {
+            if (gameSize.tilesPerRow == width && gameSize.tilesPerRow == height) {
+                return gameSize;
+            }
+        }
+        return null;
+    }
+
 }
@@ -0,0 +1,23 @@
+package org.flood;
+
+/**
+ * GeneratedBoard class that stores the tiles of a TileMatrix as they were right after it was initialized.
+ * <p/>
+ * Only the types of the tiles are stored, as the population of every tile of a new board is the suggested population
+ * of its TileType.
+ */
+final class GeneratedBoard {
+
+    final byte[] types;
+    final int humanSalt;
+
+    GeneratedBoard(byte[] types, int humanSalt) {
+        this.types = types;
+        this.humanSalt = humanSalt;
+    }
+
+    int getTileCount() {
+        return types.length;
+    }
+
+}
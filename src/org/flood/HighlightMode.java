@@ -1,10 +1,11 @@
 package org.flood;
 
 /**
- * An enumerated type of all available highlight modes.
+ * An enumerated type of all available highlight modes. The gain modes tint every tile by how many tiles or humans a
+ * click on it would flood.
  *
  * Created by Bernardo Sulzbach on 27/11/14.
  */
 public enum HighlightMode {
-    NONE, SELECTED_TILE, FULL
+    NONE, SELECTED_TILE, FULL, TILE_GAIN, HUMAN_GAIN
 }
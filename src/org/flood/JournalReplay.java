@@ -0,0 +1,223 @@
+package org.flood;
+
+import org.flood.algorithms.InitializationAlgorithm;
+import org.flood.algorithms.InitializationAlgorithms;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.BufferUnderflowException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * JournalReplay class that plays the games of a MoveJournal again, without any user interface, and checks that every
+ * checkpoint of the journal is reached.
+ * <p/>
+ * Games are generated again from their BoardCodes and the moves are applied to a FloodEngine as fast as it can make
+ * them. Games that were recorded after some moves were already made, such as loaded games, cannot be generated again,
+ * so they are skipped.
+ */
+public final class JournalReplay {
+
+    private int gameCount;
+    private int skippedGameCount;
+    private int moveCount;
+    private int checkpointCount;
+    private int mismatchCount;
+    private String firstMismatch;
+    private long nanoseconds;
+    private long moveNanoseconds;
+
+    private JournalReplay() {
+    }
+
+    /**
+     * Plays the games of a journal again.
+     *
+     * @param file the File of the journal
+     * @return a JournalReplay with the results of the replay
+     * @throws IOException if the file could not be read or is not a valid journal
+     */
+    public static JournalReplay replay(File file) throws IOException {
+        JournalReplay replay = new JournalReplay();
+        long start = System.nanoTime();
+        RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+        try {
+            FileChannel channel = randomAccessFile.getChannel();
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException(file + " is too big to be replayed.");
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.remaining() < MoveJournal.HEADER_SIZE || buffer.getInt() != MoveJournal.MAGIC) {
+                throw new IOException(file + " is not a journal.");
+            }
+            if (buffer.getShort() != MoveJournal.VERSION) {
+                throw new IOException(file + " was written by another version of the game.");
+            }
+            replay.replay(buffer);
+        } catch (BufferUnderflowException exception) {
+            throw new IOException(file + " ends in the middle of a record.", exception);
+        } catch (IllegalArgumentException exception) {
+            throw new IOException(file + " has an invalid record.", exception);
+        } catch (IllegalStateException exception) {
+            throw new IOException(file + " undoes or redoes a move that the replay cannot.", exception);
+        } finally {
+            randomAccessFile.close();
+        }
+        replay.nanoseconds = System.nanoTime() - start;
+        return replay;
+    }
+
+    private void replay(MappedByteBuffer buffer) throws IOException {
+        FloodEngine engine = null;
+        boolean replaying = false;
+        while (buffer.hasRemaining()) {
+            byte tag = buffer.get();
+            if (tag == MoveJournal.GAME) {
+                BoardCode boardCode = readBoardCode(buffer);
+                int startingMoveCount = MoveJournal.getVarint(buffer);
+                replaying = startingMoveCount == 0;
+                if (!replaying) {
+                    skippedGameCount++;
+                } else {
+                    gameCount++;
+                    // The FloodEngine is reused while the dimensions do not change, as allocating a big board is slow.
+                    if (engine == null || engine.getWidth() != boardCode.getWidth() ||
+                            engine.getHeight() != boardCode.getHeight()) {
+                        engine = new FloodEngine(boardCode);
+                    } else {
+                        engine.reinitialize(boardCode);
+                    }
+                }
+            } else if (tag == MoveJournal.MOVE) {
+                int i = MoveJournal.getVarint(buffer);
+                int j = MoveJournal.getVarint(buffer);
+                if (replaying) {
+                    long moveStart = System.nanoTime();
+                    engine.startFlood(i, j);
+                    moveNanoseconds += System.nanoTime() - moveStart;
+                    moveCount++;
+                }
+            } else if (tag == MoveJournal.UNDO || tag == MoveJournal.REDO) {
+                if (replaying) {
+                    long moveStart = System.nanoTime();
+                    if (tag == MoveJournal.UNDO) {
+                        engine.undo();
+                    } else {
+                        engine.redo();
+                    }
+                    moveNanoseconds += System.nanoTime() - moveStart;
+                }
+            } else if (tag == MoveJournal.CHECKPOINT) {
+                int recordedMoveCount = MoveJournal.getVarint(buffer);
+                int recordedWaterCount = MoveJournal.getVarint(buffer);
+                int recordedTotalPopulation = MoveJournal.getVarint(buffer);
+                if (replaying) {
+                    checkpointCount++;
+                    if (engine.getMoveCount() != recordedMoveCount || engine.getWaterCount() != recordedWaterCount ||
+                            engine.getTotalPopulation() != recordedTotalPopulation) {
+                        if (mismatchCount == 0) {
+                            firstMismatch = "Game " + gameCount + " (" + engine.getBoardCode() + ") has " +
+                                    engine.getWaterCount() + " water tiles and " + engine.getTotalPopulation() +
+                                    " humans after " + engine.getMoveCount() + " moves, but " + recordedWaterCount +
+                                    " water tiles and " + recordedTotalPopulation + " humans after " +
+                                    recordedMoveCount + " moves were recorded.";
+                        }
+                        mismatchCount++;
+                    }
+                }
+            } else {
+                throw new IOException("The journal has a record of unknown type " + tag + ".");
+            }
+        }
+    }
+
+    private static BoardCode readBoardCode(MappedByteBuffer buffer) throws IOException {
+        byte[] name = new byte[MoveJournal.getVarint(buffer)];
+        buffer.get(name);
+        InitializationAlgorithm initializationAlgorithm = InitializationAlgorithms.getInitializationAlgorithm(
+                new String(name, MoveJournal.CHARSET));
+        if (initializationAlgorithm == null) {
+            throw new IOException("The journal uses an unknown initialization algorithm.");
+        }
+        int width = MoveJournal.getVarint(buffer);
+        int height = MoveJournal.getVarint(buffer);
+        long seed = buffer.getLong();
+        if (width < 1 || width > GameData.MAXIMUM_BOARD_SIDE || height < 1 || height > GameData.MAXIMUM_BOARD_SIDE) {
+            throw new IOException("The journal has a game of invalid dimensions " + width + "x" + height + ".");
+        }
+        return new BoardCode(seed, initializationAlgorithm, width, height);
+    }
+
+    /**
+     * Returns how many games were played again.
+     */
+    public int getGameCount() {
+        return gameCount;
+    }
+
+    /**
+     * Returns how many games were skipped, as they were recorded after some moves were already made.
+     */
+    public int getSkippedGameCount() {
+        return skippedGameCount;
+    }
+
+    public int getMoveCount() {
+        return moveCount;
+    }
+
+    public int getCheckpointCount() {
+        return checkpointCount;
+    }
+
+    /**
+     * Returns how many checkpoints were not reached by the replay.
+     */
+    public int getMismatchCount() {
+        return mismatchCount;
+    }
+
+    /**
+     * Returns whether or not every checkpoint was reached by the replay.
+     */
+    public boolean isConsistent() {
+        return mismatchCount == 0;
+    }
+
+    /**
+     * Returns a description of the first checkpoint that was not reached, or null if all of them were.
+     */
+    public String getFirstMismatch() {
+        return firstMismatch;
+    }
+
+    /**
+     * Returns how long the whole replay took, generating the boards included.
+     */
+    public long getNanoseconds() {
+        return nanoseconds;
+    }
+
+    /**
+     * Returns how long making the moves took.
+     */
+    public long getMoveNanoseconds() {
+        return moveNanoseconds;
+    }
+
+    @Override
+    public String toString() {
+        String summary = String.format("Replayed %d moves of %d games in %.1f ms (%.1f ms making the moves). ",
+                moveCount, gameCount, nanoseconds / 1e6, moveNanoseconds / 1e6);
+        if (skippedGameCount != 0) {
+            summary += "Skipped " + skippedGameCount + " games that did not start with the journal. ";
+        }
+        if (isConsistent()) {
+            return summary + "All " + checkpointCount + " checkpoints were reached.";
+        }
+        return summary + mismatchCount + " of " + checkpointCount + " checkpoints were not reached. " + firstMismatch;
+    }
+
+}
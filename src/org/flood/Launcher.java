@@ -1,5 +1,9 @@
 package org.flood;
 
+import org.flood.metrics.GameMetrics;
+
+import javax.management.JMException;
+
 /**
  * Launcher class that starts the game.
  * <p/>
@@ -8,6 +12,12 @@ package org.flood;
 public class Launcher {
 
     public static void main(String[] args) {
+        try {
+            GameMetrics.register();
+        } catch (JMException exception) {
+            // The game is playable without its metrics.
+            System.err.println("Could not register the metrics: " + exception);
+        }
         new Game();
     }
 
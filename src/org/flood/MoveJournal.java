@@ -0,0 +1,304 @@
+package org.flood;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+
+/**
+ * MoveJournal class that records the games played by FloodEngines into an append-only binary file, so that they can be
+ * audited and played again by JournalReplay.
+ * <p/>
+ * The file starts with a small header and is followed by records, each one a tag byte and its fields. A game record
+ * has the BoardCode of a game, a move record the coordinates of a flood and a checkpoint record the move count, the
+ * water count and the total population of the game at that point. Undoing and redoing a move are records of a single
+ * byte. Numbers are written as unsigned variable-length integers, so a move usually takes three to five bytes.
+ * <p/>
+ * Records are encoded on the thread that makes the moves and written to the file by a background thread, so recording
+ * never waits for the disk. Errors of the background thread are reported by flush and close.
+ */
+public final class MoveJournal implements Closeable {
+
+    /**
+     * The extension of the names of journals.
+     */
+    static final String EXTENSION = "journal";
+
+    // "FLJR", read as a big-endian int.
+    static final int MAGIC = 0x464C4A52;
+    static final short VERSION = 1;
+    static final int HEADER_SIZE = 6;
+    static final byte GAME = 1;
+    static final byte MOVE = 2;
+    static final byte CHECKPOINT = 3;
+    static final byte UNDO = 4;
+    static final byte REDO = 5;
+    static final Charset CHARSET = Charset.forName("UTF-8");
+
+    private static final int INITIAL_BUFFER_CAPACITY = 1 << 12;
+
+    private final FileChannel channel;
+    private final Thread writer;
+    // The records not yet taken by the writer. Guarded by this, as are the fields below.
+    private ByteBuffer pending = ByteBuffer.allocate(INITIAL_BUFFER_CAPACITY);
+    // The records being written by the writer. Swapped with pending, so that no buffer is allocated per record.
+    private ByteBuffer writing = ByteBuffer.allocate(INITIAL_BUFFER_CAPACITY);
+    private boolean busy;
+    private boolean closed;
+    private IOException failure;
+
+    /**
+     * Opens a journal, appending to the file if it already is a journal.
+     *
+     * @param file the File of the journal
+     * @throws IOException if the file could not be opened or is not a journal
+     */
+    public MoveJournal(File file) throws IOException {
+        RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+        channel = randomAccessFile.getChannel();
+        try {
+            if (channel.size() == 0) {
+                ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+                header.putInt(MAGIC).putShort(VERSION).flip();
+                while (header.hasRemaining()) {
+                    channel.write(header);
+                }
+            } else {
+                checkHeader(file);
+                // Only ever written at the end.
+                channel.position(channel.size());
+            }
+        } catch (IOException exception) {
+            randomAccessFile.close();
+            throw exception;
+        }
+        writer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                write();
+            }
+        }, "Journal Writer");
+        // A journal that is not closed loses its last records instead of keeping the game from exiting.
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    private void checkHeader(File file) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        while (header.hasRemaining() && channel.read(header, header.position()) != -1) {
+            // Reads until the whole header is read or the end of the file is reached.
+        }
+        header.flip();
+        if (header.remaining() != HEADER_SIZE || header.getInt() != MAGIC) {
+            throw new IOException(file + " is not a journal.");
+        }
+        if (header.getShort() != VERSION) {
+            throw new IOException(file + " was written by another version of the game.");
+        }
+    }
+
+    /**
+     * Records the start of a game.
+     *
+     * @param boardCode the BoardCode of the game
+     * @param moveCount how many moves were made before the game was recorded, zero if it was recorded from the start
+     */
+    public synchronized void recordGame(BoardCode boardCode, int moveCount) {
+        byte[] name = boardCode.getInitializationAlgorithm().toString().getBytes(CHARSET);
+        ByteBuffer buffer = reserve(1 + 5 + name.length + 5 + 5 + 8 + 5);
+        buffer.put(GAME);
+        putVarint(buffer, name.length);
+        buffer.put(name);
+        putVarint(buffer, boardCode.getWidth());
+        putVarint(buffer, boardCode.getHeight());
+        buffer.putLong(boardCode.getSeed());
+        putVarint(buffer, moveCount);
+    }
+
+    /**
+     * Records a flood starting at (i, j).
+     *
+     * @param i the i coordinate
+     * @param j the j coordinate
+     */
+    public synchronized void recordMove(int i, int j) {
+        ByteBuffer buffer = reserve(1 + 5 + 5);
+        buffer.put(MOVE);
+        putVarint(buffer, i);
+        putVarint(buffer, j);
+    }
+
+    /**
+     * Records that the last move was undone.
+     */
+    public synchronized void recordUndo() {
+        reserve(1).put(UNDO);
+    }
+
+    /**
+     * Records that the last move that was undone was made again.
+     */
+    public synchronized void recordRedo() {
+        reserve(1).put(REDO);
+    }
+
+    /**
+     * Records the state of the game, so that a replay can check that it got to the same state.
+     *
+     * @param moveCount       how many moves were made
+     * @param waterCount      how many tiles are water
+     * @param totalPopulation how many humans live on the board
+     */
+    public synchronized void recordCheckpoint(int moveCount, int waterCount, int totalPopulation) {
+        ByteBuffer buffer = reserve(1 + 5 + 5 + 5);
+        buffer.put(CHECKPOINT);
+        putVarint(buffer, moveCount);
+        putVarint(buffer, waterCount);
+        putVarint(buffer, totalPopulation);
+    }
+
+    /**
+     * Returns the pending buffer with room for at least the specified number of bytes, waking the writer up if the
+     * buffer was empty. After a failure or after the journal is closed, returns a scratch buffer, as nothing else
+     * can be written.
+     */
+    private ByteBuffer reserve(int bytes) {
+        if (closed || failure != null) {
+            return ByteBuffer.allocate(bytes);
+        }
+        if (pending.position() == 0) {
+            notifyAll();
+        }
+        if (pending.remaining() < bytes) {
+            ByteBuffer bigger = ByteBuffer.allocate(Math.max(2 * pending.capacity(), pending.position() + bytes));
+            pending.flip();
+            bigger.put(pending);
+            pending = bigger;
+        }
+        return pending;
+    }
+
+    /**
+     * Writes an unsigned variable-length integer: seven bits per byte, lowest bits first, with the highest bit of
+     * every byte but the last one set.
+     */
+    private static void putVarint(ByteBuffer buffer, int value) {
+        while ((value & ~0x7F) != 0) {
+            buffer.put((byte) (value & 0x7F | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+
+    /**
+     * Reads an unsigned variable-length integer written by putVarint.
+     */
+    static int getVarint(ByteBuffer buffer) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < Integer.SIZE; shift += 7) {
+            byte b = buffer.get();
+            value |= (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+        throw new IOException("A number of the journal is too long.");
+    }
+
+    /**
+     * The loop of the writer thread, which writes whatever is pending until the journal is closed.
+     */
+    private void write() {
+        try {
+            while (true) {
+                synchronized (this) {
+                    busy = false;
+                    notifyAll();
+                    while (pending.position() == 0 && !closed) {
+                        wait();
+                    }
+                    if (pending.position() == 0) {
+                        return;
+                    }
+                    ByteBuffer buffer = writing;
+                    writing = pending;
+                    pending = buffer;
+                    busy = true;
+                }
+                // Only the writer touches the writing buffer, so it is written without holding the lock.
+                writing.flip();
+                while (writing.hasRemaining()) {
+                    channel.write(writing);
+                }
+                writing.clear();
+            }
+        } catch (IOException exception) {
+            synchronized (this) {
+                failure = exception;
+                busy = false;
+                notifyAll();
+            }
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Waits until every record made so far is written to the file.
+     *
+     * @throws IOException if the writer failed to write a record
+     */
+    public synchronized void flush() throws IOException {
+        boolean interrupted = false;
+        while ((pending.position() != 0 || busy) && failure == null && writer.isAlive()) {
+            try {
+                wait();
+            } catch (InterruptedException exception) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    /**
+     * Writes every record made so far and closes the file. Records made after the journal is closed are ignored.
+     *
+     * @throws IOException if the writer failed to write a record or the file could not be closed
+     */
+    @Override
+    public void close() throws IOException {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            notifyAll();
+        }
+        boolean interrupted = false;
+        while (writer.isAlive()) {
+            try {
+                writer.join();
+            } catch (InterruptedException exception) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        channel.close();
+        synchronized (this) {
+            if (failure != null) {
+                throw failure;
+            }
+        }
+    }
+
+}
@@ -0,0 +1,187 @@
+package org.flood;
+
+import java.awt.Color;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+
+/**
+ * PerformanceOverlay class that shows, over the board, how long painting and flooding take and how much of the heap is
+ * used, so that it can be seen whether a combination of GameSize, HighlightMode and Theme fits in the frame budget.
+ * <p/>
+ * The overlay is painted after every frame of the GamePanel. Its text is written into a reused char array and drawn
+ * with drawChars, so that painting it does not create objects or format strings.
+ */
+final class PerformanceOverlay {
+
+    // How long a frame may take to paint for the game to run at 60 frames per second.
+    private static final long FRAME_BUDGET = 16000000L;
+    // The percentile is taken over the most recent frames, so that it follows changes of the settings.
+    private static final int RECENT_FRAMES = 128;
+    private static final long NANOSECONDS_PER_SECOND = 1000000000L;
+    private static final long NANOSECONDS_PER_MICROSECOND = 1000L;
+    private static final int BYTES_PER_MEGABYTE = 1 << 20;
+    private static final int LINE_COUNT = 4;
+    private static final int LINE_HEIGHT = 17;
+    private static final int MARGIN = 4;
+    private static final Color BACKGROUND = new Color(0, 0, 0, 192);
+    private static final Color OVER_BUDGET = new Color(255, 96, 96);
+
+    static final int WIDTH = 220;
+    static final int HEIGHT = LINE_COUNT * LINE_HEIGHT + 2 * MARGIN;
+
+    // Drawing a translucent image, unlike filling a translucent rectangle, does not allocate.
+    private final BufferedImage background;
+    private final long[] recentFrames = new long[RECENT_FRAMES];
+    private final long[] sortedFrames = new long[RECENT_FRAMES];
+    private int frameCount;
+    private long lastFrame;
+    // The repaints are counted over windows of a second, the rate shown is the one of the last complete window.
+    private long windowStart;
+    private int windowFrames;
+    private int repaintsPerSecond;
+    private final char[] line = new char[64];
+    private int length;
+
+    PerformanceOverlay() {
+        background = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = background.createGraphics();
+        try {
+            g.setColor(BACKGROUND);
+            g.fillRect(0, 0, WIDTH, HEIGHT);
+        } finally {
+            g.dispose();
+        }
+    }
+
+    /**
+     * Records how long a frame took to paint.
+     *
+     * @param nanoseconds the duration of the frame
+     */
+    void recordFrame(long nanoseconds) {
+        recentFrames[frameCount % RECENT_FRAMES] = nanoseconds;
+        frameCount++;
+        lastFrame = nanoseconds;
+        long now = System.nanoTime();
+        if (windowFrames == 0) {
+            windowStart = now;
+        }
+        windowFrames++;
+        if (now - windowStart >= NANOSECONDS_PER_SECOND) {
+            repaintsPerSecond = (int) (windowFrames * NANOSECONDS_PER_SECOND / (now - windowStart));
+            windowFrames = 0;
+        }
+    }
+
+    /**
+     * Forgets the frames recorded so far.
+     */
+    void reset() {
+        frameCount = 0;
+        lastFrame = 0;
+        windowFrames = 0;
+        repaintsPerSecond = 0;
+    }
+
+    /**
+     * Paints the overlay.
+     *
+     * @param g                 the Graphics object used to paint
+     * @param x                 the x coordinate of the left side of the overlay
+     * @param y                 the y coordinate of the top side of the overlay
+     * @param lastFloodDuration how long the last flood took, in nanoseconds
+     * @param lastFloodTiles    how many tiles the last flood turned into water
+     */
+    void paint(Graphics g, int x, int y, long lastFloodDuration, int lastFloodTiles) {
+        g.drawImage(background, x, y, null);
+        int textX = x + MARGIN;
+        int baseline = y + LINE_HEIGHT;
+        long p99 = getRecentPercentile(99);
+        g.setColor(p99 > FRAME_BUDGET ? OVER_BUDGET : Color.GREEN);
+        length = 0;
+        append("Paint ");
+        appendMilliseconds(lastFrame);
+        append(", p99 ");
+        appendMilliseconds(p99);
+        g.drawChars(line, 0, length, textX, baseline);
+        g.setColor(Color.GREEN);
+        length = 0;
+        append(repaintsPerSecond);
+        append(" repaints/s");
+        g.drawChars(line, 0, length, textX, baseline += LINE_HEIGHT);
+        length = 0;
+        append("Flood ");
+        appendMilliseconds(lastFloodDuration);
+        append(", ");
+        append(lastFloodTiles);
+        append(lastFloodTiles == 1 ? " tile" : " tiles");
+        g.drawChars(line, 0, length, textX, baseline += LINE_HEIGHT);
+        Runtime runtime = Runtime.getRuntime();
+        length = 0;
+        append("Heap ");
+        append((int) ((runtime.totalMemory() - runtime.freeMemory()) / BYTES_PER_MEGABYTE));
+        append(" of ");
+        append((int) (runtime.maxMemory() / BYTES_PER_MEGABYTE));
+        append(" MB");
+        g.drawChars(line, 0, length, textX, baseline + LINE_HEIGHT);
+    }
+
+    /**
+     * Returns the duration that the specified percentage of the most recent frames did not take longer than.
+     */
+    private long getRecentPercentile(int percentile) {
+        int count = Math.min(frameCount, RECENT_FRAMES);
+        if (count == 0) {
+            return 0;
+        }
+        // An insertion sort, as Arrays.sort allocates to merge the runs of durations that are already in order.
+        for (int k = 0; k < count; k++) {
+            long frame = recentFrames[k];
+            int position = k;
+            while (position > 0 && sortedFrames[position - 1] > frame) {
+                sortedFrames[position] = sortedFrames[position - 1];
+                position--;
+            }
+            sortedFrames[position] = frame;
+        }
+        return sortedFrames[(count * percentile + 99) / 100 - 1];
+    }
+
+    private void append(String string) {
+        string.getChars(0, string.length(), line, length);
+        length += string.length();
+    }
+
+    private void append(int value) {
+        if (value < 0) {
+            line[length++] = '-';
+            value = -value;
+        }
+        int start = length;
+        do {
+            line[length++] = (char) ('0' + value % 10);
+            value /= 10;
+        } while (value != 0);
+        // The digits were written from the least significant one.
+        for (int left = start, right = length - 1; left < right; left++, right--) {
+            char digit = line[left];
+            line[left] = line[right];
+            line[right] = digit;
+        }
+    }
+
+    /**
+     * Appends a duration in milliseconds with two decimal places.
+     */
+    private void appendMilliseconds(long nanoseconds) {
+        long hundredths = (nanoseconds / NANOSECONDS_PER_MICROSECOND + 5) / 10;
+        append((int) (hundredths / 100));
+        line[length++] = '.';
+        int fraction = (int) (hundredths % 100);
+        line[length++] = (char) ('0' + fraction / 10);
+        line[length++] = (char) ('0' + fraction % 10);
+        append(" ms");
+    }
+
+}
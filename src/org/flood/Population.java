@@ -1,7 +1,6 @@
 package org.flood;
 
-import java.util.HashSet;
-import java.util.Set;
+import java.util.Random;
 
 /**
  * Population class that represents a Tile's population.
@@ -10,18 +9,83 @@ import java.util.Set;
  */
 public class Population {
 
+    /**
+     * The biggest population a single tile can have.
+     */
+    static final int MAX_POPULATION = computeMaximumPopulation();
+
+    /**
+     * How many different layouts there are for the humans of a tile. Must be a power of two.
+     */
+    static final int LAYOUT_COUNT = 16;
+
+    // The layouts are always the same, which tile uses which one is what changes.
+    private static final long LAYOUT_SEED = 15051505L;
+    // The x and y offsets of every human of every layout.
+    private static final float[] LAYOUTS = makeLayouts();
+
     private int total;
-    private Set<Double[]> humans = new HashSet<Double[]>();
+    private final int layout;
+
+    public Population() {
+        this(0, 0);
+    }
 
+    Population(int total, int layout) {
+        this.total = total;
+        this.layout = layout;
+    }
+
+    /**
+     * Makes the Population of a new Tile of the specified type. Its humans are placed according to the first layout,
+     * the Population of a tile of a TileMatrix uses the layout given by the position of the tile.
+     *
+     * @param type the TileType of the new Tile
+     * @return a new Population object
+     */
     public static Population makePopulation(TileType type) {
-        Population population = new Population();
-        population.setTotal(type.suggestedPopulation);
-        for (int i = 0; i < type.suggestedPopulation; i++) {
-            // The random distribution is pretty ugly. Consider a poisson disk algorithm.
-            Double[] human = {GameData.random.nextDouble(), GameData.random.nextDouble()};
-            population.humans.add(human);
+        return new Population(type.suggestedPopulation, 0);
+    }
+
+    private static int computeMaximumPopulation() {
+        int maximum = 0;
+        for (TileType type : TileType.values()) {
+            maximum = Math.max(maximum, type.suggestedPopulation);
+        }
+        return maximum;
+    }
+
+    private static float[] makeLayouts() {
+        Random random = new Random(LAYOUT_SEED);
+        float[] layouts = new float[LAYOUT_COUNT * MAX_POPULATION * 2];
+        for (int i = 0; i < layouts.length; i++) {
+            layouts[i] = random.nextFloat();
         }
-        return population;
+        return layouts;
+    }
+
+    /**
+     * Returns how much (relatively) the representation of a human placed according to a layout should be horizontally
+     * offset.
+     *
+     * @param layout the layout, from 0 (inclusive) up to LAYOUT_COUNT (exclusive)
+     * @param human  the index of the human, smaller than MAX_POPULATION
+     * @return a float from 0.0f (inclusive) up to 1.0f (exclusive)
+     */
+    static float getHumanX(int layout, int human) {
+        return LAYOUTS[2 * (layout * MAX_POPULATION + human)];
+    }
+
+    /**
+     * Returns how much (relatively) the representation of a human placed according to a layout should be vertically
+     * offset.
+     *
+     * @param layout the layout, from 0 (inclusive) up to LAYOUT_COUNT (exclusive)
+     * @param human  the index of the human, smaller than MAX_POPULATION
+     * @return a float from 0.0f (inclusive) up to 1.0f (exclusive)
+     */
+    static float getHumanY(int layout, int human) {
+        return LAYOUTS[2 * (layout * MAX_POPULATION + human) + 1];
     }
 
     public int getTotal() {
@@ -38,13 +102,23 @@ public class Population {
     }
 
     /**
-     * Returns a set of pairs of doubles representing how much (relatively) the representation of each human of this
-     * population should be offset.
+     * Returns how much (relatively) the representation of a human of this population should be horizontally offset.
+     *
+     * @param human the index of the human, smaller than the total population
+     * @return a float from 0.0f (inclusive) up to 1.0f (exclusive)
+     */
+    public float getHumanX(int human) {
+        return getHumanX(layout, human);
+    }
+
+    /**
+     * Returns how much (relatively) the representation of a human of this population should be vertically offset.
      *
-     * @return a set of arrays of Double of length 2 that vary from 0.0d (inclusive) up to 1.0d (exclusive)
+     * @param human the index of the human, smaller than the total population
+     * @return a float from 0.0f (inclusive) up to 1.0f (exclusive)
      */
-    public Set<Double[]> getHumans() {
-        return humans;
+    public float getHumanY(int human) {
+        return getHumanY(layout, human);
     }
 
 }
@@ -0,0 +1,42 @@
+package org.flood;
+
+import java.util.List;
+
+/**
+ * RegionListener interface of the objects that follow the beach regions of a TileMatrix as they change.
+ * <p/>
+ * The methods are called by the thread that changes the TileMatrix, right after the change, so they should only take
+ * note of it. The arrays of members are never modified after they are passed, so they may be kept. The populations of
+ * the regions are passed along with them, so a listener never needs to read the tiles of the TileMatrix, which keep
+ * changing on the thread that changes it.
+ */
+interface RegionListener {
+
+    /**
+     * Called after every region was labeled again from scratch, as when the board is filled.
+     *
+     * @param source      the TileMatrix
+     * @param regions     the members of every region, indexed by label, with null for labels of regions that are gone
+     * @param populations how many humans live in every region, indexed by label
+     */
+    void regionsLabeled(TileMatrix source, List<int[]> regions, int[] populations);
+
+    /**
+     * Called when a new region is labeled. Its members may have belonged to other regions.
+     *
+     * @param source     the TileMatrix
+     * @param members    the indices of the tiles of the region
+     * @param population how many humans live in the region
+     */
+    void regionAdded(TileMatrix source, int[] members, int population);
+
+    /**
+     * Called when a region stops existing, as when it is flooded. Its tiles that are still beaches are passed to
+     * regionAdded afterwards, as members of other regions.
+     *
+     * @param source  the TileMatrix
+     * @param members the indices of the tiles of the region
+     */
+    void regionRemoved(TileMatrix source, int[] members);
+
+}
@@ -0,0 +1,89 @@
+package org.flood;
+
+/**
+ * SplitRandom class that implements the SplitMix64 pseudorandom number generator.
+ * <p/>
+ * Unlike java.util.Random, a SplitRandom is not synchronized and can be split into independent generators identified
+ * by a number. Giving each part of a job the generator split for its number makes the result depend only on the seed,
+ * not on how many threads did the job or in which order. A SplitRandom must not be shared between threads.
+ */
+public final class SplitRandom {
+
+    private static final long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L;
+    private static final double DOUBLE_UNIT = 0x1.0p-53;
+
+    private long state;
+
+    /**
+     * Creates a SplitRandom. Two SplitRandom objects created with the same seed generate the same sequence.
+     *
+     * @param seed the seed
+     */
+    public SplitRandom(long seed) {
+        this.state = seed;
+    }
+
+    /**
+     * The finalizer of SplitMix64, which spreads the bits of a long. Also used to hash coordinates into random values.
+     *
+     * @param z a long
+     * @return a long whose bits all depend on every bit of z
+     */
+    public static long mix64(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    /**
+     * Returns a new SplitRandom for the specified stream. This SplitRandom is not advanced, so the generator returned
+     * for a stream depends only on the current state of this SplitRandom and on the stream.
+     *
+     * @param stream the number of the stream
+     * @return a new SplitRandom
+     */
+    public SplitRandom split(long stream) {
+        // Mixing the seed keeps the streams from being shifted copies of each other.
+        return new SplitRandom(mix64(state + (stream + 1) * GOLDEN_GAMMA));
+    }
+
+    public long nextLong() {
+        state += GOLDEN_GAMMA;
+        return mix64(state);
+    }
+
+    public int nextInt() {
+        return (int) (nextLong() >>> 32);
+    }
+
+    /**
+     * Returns a uniformly distributed int from zero (inclusive) up to bound (exclusive).
+     *
+     * @param bound the bound, must be positive
+     * @return a nonnegative int smaller than bound
+     */
+    public int nextInt(int bound) {
+        if (bound <= 0) {
+            throw new IllegalArgumentException("bound must be positive.");
+        }
+        int r = nextInt() >>> 1;
+        int m = bound - 1;
+        if ((bound & m) == 0) {
+            return (int) ((bound * (long) r) >> 31);
+        }
+        // Reject the values of the last, incomplete, interval so that every value is equally likely.
+        for (int u = r; u - (r = u % bound) + m < 0; u = nextInt() >>> 1) {
+        }
+        return r;
+    }
+
+    /**
+     * Returns a uniformly distributed double from zero (inclusive) up to one (exclusive).
+     *
+     * @return a double
+     */
+    public double nextDouble() {
+        return (nextLong() >>> 11) * DOUBLE_UNIT;
+    }
+
+}
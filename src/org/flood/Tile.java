@@ -3,23 +3,44 @@ package org.flood;
 /**
  * Tile class that stores a TileType and provides convenience predicate methods about its type.
  * <p/>
+ * A Tile is either standalone, when created through its public constructor, or a view over a cell of a TileMatrix,
+ * when obtained through {@link TileMatrix#getTile(int, int)}.
+ * <p/>
  * Created by Bernardo Sulzbach on 02/11/14.
  */
 public class Tile {
 
+    // Only set if this Tile is a view over a cell of a TileMatrix.
+    private final TileMatrix matrix;
+    private final int index;
+
     private TileType type;
     private Population population;
 
     public Tile(TileType type) {
+        this.matrix = null;
+        this.index = -1;
         this.type = type;
         this.population = Population.makePopulation(type);
     }
 
+    Tile(TileMatrix matrix, int index) {
+        this.matrix = matrix;
+        this.index = index;
+    }
+
     public TileType getType() {
+        if (matrix != null) {
+            return matrix.getTileType(index);
+        }
         return type;
     }
 
     public void setType(TileType type) {
+        if (matrix != null) {
+            matrix.setTileType(index, type);
+            return;
+        }
         if (this.type == type) {
             throw new AssertionError("Redundant setType(TileType) call.");
         }
@@ -30,15 +51,43 @@ public class Tile {
     }
 
     public boolean isBeach() {
-        return type.equals(TileType.BEACH);
+        return getType().equals(TileType.BEACH);
     }
 
     public boolean isWater() {
-        return type.equals(TileType.WATER);
+        return getType().equals(TileType.WATER);
     }
 
+    /**
+     * Returns the Population of this Tile. If this Tile is a view over a TileMatrix, the returned Population is a copy.
+     *
+     * @return a Population object
+     */
     public Population getPopulation() {
+        if (matrix != null) {
+            return matrix.getPopulation(index);
+        }
         return population;
     }
 
+    @Override
+    public boolean equals(Object object) {
+        if (this == object) {
+            return true;
+        }
+        if (matrix == null || !(object instanceof Tile)) {
+            return false;
+        }
+        Tile tile = (Tile) object;
+        return matrix == tile.matrix && index == tile.index;
+    }
+
+    @Override
+    public int hashCode() {
+        if (matrix == null) {
+            return super.hashCode();
+        }
+        return 31 * System.identityHashCode(matrix) + index;
+    }
+
 }
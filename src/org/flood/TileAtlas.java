@@ -0,0 +1,98 @@
+package org.flood;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+
+/**
+ * TileAtlas class that stores pre-rendered sprites of all the tiles of a Theme, with their humans, in a single image.
+ * <p/>
+ * There is a sprite for each TileType, population, human layout and for both the 'up' and the 'down' states, so that
+ * painting a tile is a single image copy.
+ */
+class TileAtlas {
+
+    static final int PEOPLE_SQUARE_SIDE = 2;
+
+    // Each row of the atlas has all the layouts, 'up' and 'down', of a TileType and population pair.
+    private static final int COLUMNS = 2 * Population.LAYOUT_COUNT;
+    private static final int ROWS = TileType.values().length * (Population.MAX_POPULATION + 1);
+
+    private final int tileSide;
+    private final BufferedImage image;
+
+    /**
+     * Renders all the sprites of a Theme.
+     *
+     * @param theme                 the Theme
+     * @param tileSide              the side of a tile, in pixels
+     * @param graphicsConfiguration the GraphicsConfiguration the sprites will be painted to, may be null
+     */
+    TileAtlas(Theme theme, int tileSide, GraphicsConfiguration graphicsConfiguration) {
+        if (tileSide - PEOPLE_SQUARE_SIDE - 1 < 1) {
+            throw new AssertionError("tileSide is too small.");
+        }
+        this.tileSide = tileSide;
+        int width = COLUMNS * tileSide;
+        int height = ROWS * tileSide;
+        if (graphicsConfiguration != null) {
+            image = graphicsConfiguration.createCompatibleImage(width, height);
+        } else {
+            image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        }
+        Graphics2D g = image.createGraphics();
+        try {
+            for (TileType type : TileType.values()) {
+                for (int population = 0; population <= Population.MAX_POPULATION; population++) {
+                    for (int layout = 0; layout < Population.LAYOUT_COUNT; layout++) {
+                        renderSprite(g, theme, type, population, layout, true);
+                        renderSprite(g, theme, type, population, layout, false);
+                    }
+                }
+            }
+        } finally {
+            g.dispose();
+        }
+    }
+
+    private static int getRow(TileType type, int population) {
+        return type.ordinal() * (Population.MAX_POPULATION + 1) + population;
+    }
+
+    private static int getColumn(int layout, boolean raised) {
+        return 2 * layout + (raised ? 0 : 1);
+    }
+
+    private void renderSprite(Graphics g, Theme theme, TileType type, int population, int layout, boolean raised) {
+        int left = getColumn(layout, raised) * tileSide;
+        int top = getRow(type, population) * tileSide;
+        g.setColor(theme.colors.get(type));
+        g.fill3DRect(left, top, tileSide, tileSide, raised);
+        if (type != TileType.WATER) {
+            g.setColor(Color.RED);
+            int factor = tileSide - PEOPLE_SQUARE_SIDE - 1;
+            for (int human = 0; human < population; human++) {
+                int x = 1 + (int) (factor * Population.getHumanX(layout, human));
+                int y = 1 + (int) (factor * Population.getHumanY(layout, human));
+                g.fillRect(left + x, top + y, PEOPLE_SQUARE_SIDE, PEOPLE_SQUARE_SIDE);
+            }
+        }
+    }
+
+    /**
+     * Paints a tile.
+     *
+     * @param g          the Graphics object used to paint
+     * @param type       the TileType of the tile
+     * @param population the population of the tile
+     * @param layout     the layout of the humans of the tile
+     * @param raised     whether the tile should be painted 'up' or 'down'
+     * @param x          the x coordinate of the top left corner of the tile, in pixels
+     * @param y          the y coordinate of the top left corner of the tile, in pixels
+     */
+    void paintTile(Graphics g, TileType type, int population, int layout, boolean raised, int x, int y) {
+        int left = getColumn(layout, raised) * tileSide;
+        int top = getRow(type, population) * tileSide;
+        g.drawImage(image, x, y, x + tileSide, y + tileSide, left, top, left + tileSide, top + tileSide, null);
+    }
+
+}
@@ -1,26 +1,97 @@
 package org.flood;
 
+import org.flood.algorithms.InitializationAlgorithm;
+import org.flood.metrics.GameEvents;
+import org.flood.metrics.GameMetrics;
+
+import java.awt.Rectangle;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
 
 /**
- * TileMatrix class that is a wrapper to a bidimensional array of Tile objects.
+ * TileMatrix class that stores a bidimensional grid of tiles.
+ * <p/>
+ * The tiles are kept in packed primitive arrays indexed by {@code j * width + i} instead of as Tile objects. Tile
+ * objects obtained through {@link #getTile(int, int)} are views over these arrays. The humans of a tile are not
+ * stored, their positions are given by one of the layouts of Population.
  * <p/>
  * Created by Bernardo Sulzbach on 02/11/14.
  */
 public class TileMatrix {
 
-    private final Tile[][] tileArray;
-    private final ArrayList<Tile> alreadyHitInThisChainReaction = new ArrayList<Tile>();
+    private static final TileType[] TILE_TYPES = TileType.values();
+    private static final int INITIAL_REGION_CAPACITY = 64;
+    private static final int NO_REGION = -1;
+    private static final int[] EMPTY_SELECTION = new int[0];
+    private static final byte[] NO_POPULATIONS = new byte[0];
+    private static final long DEFAULT_HISTORY_BUDGET = 64L << 20;
+    // How many pairs of type and population a tile may have, each one with its own Zobrist key.
+    static final int POPULATION_STATES = Population.MAX_POPULATION + 1;
+    private static final int TILE_STATES = TILE_TYPES.length * POPULATION_STATES;
+
+    private final byte[] types;
+    // Every population fits in a byte, which keeps the biggest boards small.
+    private final byte[] populations;
+    // Changes the layouts of the humans of every tile from one game to the next.
+    private int humanSalt;
+    // Marks the tiles already hit by the flood being collected, one bit per tile. Always cleared after a flood. Not a
+    // BitSet, as BitSet.clear(int) scans down for the highest set bit, which is slow on the biggest boards.
+    private final long[] visited;
+    // The indices of the tiles hit by the last collected flood.
+    private int[] region = new int[INITIAL_REGION_CAPACITY];
+    // The indices of the tiles that became beaches after the last flood.
+    private int[] frontier = new int[INITIAL_REGION_CAPACITY];
+    private int frontierSize;
+    // The label of the beach region of each tile, NO_REGION for tiles that are not beaches.
+    private final int[] labels;
+    // The members of each beach region, indexed by label. Labels of regions that no longer exist map to null.
+    private final ArrayList<int[]> regions = new ArrayList<int[]>();
+    // The labels that map to null, which are given to new regions before new labels are made, so regions stays small.
+    private int[] freeLabels = new int[INITIAL_REGION_CAPACITY];
+    private int freeLabelCount;
+    private boolean regionsValid;
+    // Told about the regions as they change, null if nothing follows them.
+    private RegionListener regionListener;
+    // The changes made by the last floods, oldest first, and how many bytes they keep alive.
+    private final ArrayDeque<FloodDelta> history = new ArrayDeque<FloodDelta>();
+    private long historySize;
+    private long historyBudget = DEFAULT_HISTORY_BUDGET;
+    // The indices of the tiles where the undone floods started, the last undone one on top.
+    private int[] redoStarts = new int[INITIAL_REGION_CAPACITY];
+    private int redoCount;
     private final Dimension dimensions;
-    private final Configuration configuration;
-    private int lastWaterCount;
+    // Running counters, kept up to date whenever a tile changes.
+    private int waterCount;
+    private int totalPopulation;
+    // The Zobrist hash of the tiles, only kept up to date while it is valid. Computed again when it is next asked for
+    // after the matrix is filled in bulk, which is as cheap as updating it for every tile would have been.
+    private long hash;
+    private boolean hashValid;
+    // Set while an InitializationAlgorithm fills the matrix, possibly from many threads. The running counters are not
+    // updated then, they are counted again afterwards.
+    private boolean loading;
+
+    /**
+     * Creates a TileMatrix. It must be initialized before it is used.
+     *
+     * @param width  how many tiles there are in a row
+     * @param height how many tiles there are in a column
+     */
+    TileMatrix(int width, int height) {
+        this.dimensions = new Dimension(width, height);
+        int tileCount = width * height;
+        this.types = new byte[tileCount];
+        this.populations = new byte[tileCount];
+        this.visited = new long[(tileCount + 63) >>> 6];
+        this.labels = new int[tileCount];
+    }
 
-    public TileMatrix(Configuration configuration) {
-        GameSize gameSize = configuration.getGameSize();
-        this.tileArray = new Tile[gameSize.tilesPerRow][gameSize.tilesPerRow];
-        this.dimensions = new Dimension(gameSize.tilesPerRow, gameSize.tilesPerRow);
-        this.configuration = configuration;
-        initialize();
+    /**
+     * Returns the index of (i, j) in the packed arrays.
+     */
+    private int index(int i, int j) {
+        return j * dimensions.width + i;
     }
 
     /**
@@ -30,171 +101,812 @@ public class TileMatrix {
      * @param j the j coordinate.
      * @return a TileType.
      */
-    TileType getTileType(int i, int j) {
-        return tileArray[j][i].getType();
+    public TileType getTileType(int i, int j) {
+        return getTileType(index(i, j));
+    }
+
+    TileType getTileType(int index) {
+        return TILE_TYPES[types[index]];
     }
 
     /**
-     * Returns how many tiles are water.
+     * Changes the type of the tile at the specified index. Water tiles have no population, so the population of the
+     * tile is set to zero if it becomes water.
+     * <p/>
+     * As this may split or join beach regions, the region labels are rebuilt before they are used again.
      *
-     * @return an int.
+     * @param index the index of the tile in the packed arrays
+     * @param type  the new TileType
      */
-    int getWaterCount() {
-        return lastWaterCount;
+    void setTileType(int index, TileType type) {
+        changeType(index, type);
+        invalidateRegions();
     }
 
     /**
-     * Updates the water count variable. Should be called whenever the number of water tiles changes.
+     * Marks the region labels as outdated after a tile was changed from outside of a flood. The floods in the history
+     * can no longer be undone, as the tiles around them may have changed.
      */
-    private void updateWaterCount() {
-        lastWaterCount = 0;
-        for (Tile[] row : tileArray) {
-            for (Tile tile : row) {
-                if (tile.isWater()) {
-                    lastWaterCount++;
-                }
+    private void invalidateRegions() {
+        regionsValid = false;
+        clearHistory();
+    }
+
+    /**
+     * Changes the type of the tile at the specified index, updating the running counters but not the region labels.
+     */
+    private void changeType(int index, TileType type) {
+        if (types[index] == type.ordinal()) {
+            throw new AssertionError("Redundant setTileType(int, TileType) call.");
+        }
+        if (hashValid) {
+            int population = type == TileType.WATER ? 0 : populations[index];
+            hash ^= getKey(index, types[index], populations[index]) ^ getKey(index, type.ordinal(), population);
+        }
+        if (isWater(index)) {
+            waterCount--;
+        }
+        if (type == TileType.WATER) {
+            waterCount++;
+            totalPopulation -= populations[index];
+            populations[index] = 0;
+        }
+        types[index] = (byte) type.ordinal();
+    }
+
+    /**
+     * Returns the Zobrist key of a tile with the specified type and population at the specified index. The keys are
+     * derived from the index instead of stored, as a table of keys would be much bigger than the biggest boards.
+     */
+    private static long getKey(int index, int type, int population) {
+        return SplitRandom.mix64((long) index * TILE_STATES + getState(type, population));
+    }
+
+    /**
+     * Returns the state of a tile, a single number for its type and population, from 0 up to TILE_STATES (exclusive).
+     */
+    private static int getState(int type, int population) {
+        return type * POPULATION_STATES + population;
+    }
+
+    /**
+     * Copies the state of every tile inside an area, as given by getState, into an array indexed as the packed arrays.
+     *
+     * @param area   a Rectangle, in tiles
+     * @param states an array with an element for every tile of this TileMatrix
+     */
+    void copyStates(Rectangle area, byte[] states) {
+        int width = dimensions.width;
+        for (int j = area.y; j < area.y + area.height; j++) {
+            int end = j * width + area.x + area.width;
+            for (int index = j * width + area.x; index < end; index++) {
+                states[index] = (byte) getState(types[index], populations[index]);
             }
         }
     }
 
     /**
-     * Starts a flood in the tile found in (i, j) after checking that it is floodable.
+     * Returns a 64-bit Zobrist hash of the tiles of this TileMatrix. Equal boards have equal hashes, so this tells
+     * boards apart, and keys results computed for a board, without comparing them tile by tile. The humans are not
+     * part of the hash, as they only change how a board looks.
+     * <p/>
+     * The hash is updated in constant time whenever a tile changes. It is only computed from all the tiles the first
+     * time it is asked for after the matrix is filled.
+     *
+     * @return a long
+     */
+    public long getHash() {
+        if (!hashValid) {
+            long newHash = SplitRandom.mix64((long) dimensions.width << 32 | dimensions.height);
+            for (int index = 0; index < types.length; index++) {
+                newHash ^= getKey(index, types[index], populations[index]);
+            }
+            hash = newHash;
+            hashValid = true;
+        }
+        return hash;
+    }
+
+    /**
+     * Returns how many humans live in the tile at (i, j).
      *
      * @param i the i coordinate.
      * @param j the j coordinate.
+     * @return a nonnegative int.
      */
-    void startFlood(int i, int j) {
-        if (i < 0 || i >= tileArray.length || j < 0 || j >= tileArray.length) {
-            throw new IllegalArgumentException("i and j must be nonnegative and smaller than the length of the array.");
-        }
-        flood(i, j);
-        alreadyHitInThisChainReaction.clear();
-        updateTiles(false);
-        updateWaterCount();
+    int getPopulation(int i, int j) {
+        return populations[index(i, j)];
     }
 
     /**
-     * Floods the tile found in (i, j) and propagates the flood all floodable adjacent tiles.
+     * Returns which of the layouts of Population is used to place the humans of the tile at (i, j). The layout is
+     * derived from the position of the tile, so it does not need to be stored.
      *
      * @param i the i coordinate.
      * @param j the j coordinate.
+     * @return an int from 0 (inclusive) up to Population.LAYOUT_COUNT (exclusive).
+     */
+    int getHumanLayout(int i, int j) {
+        return getHumanLayout(index(i, j));
+    }
+
+    private int getHumanLayout(int index) {
+        return computeHumanLayout(index, humanSalt);
+    }
+
+    /**
+     * Returns the layout of the humans of the tile at the specified index of a board with the specified salt.
+     */
+    static int computeHumanLayout(int index, int humanSalt) {
+        // The finalization step of MurmurHash3, which spreads the bits of the index and of the salt.
+        int hash = index * 0x9E3779B9 + humanSalt;
+        hash ^= hash >>> 16;
+        hash *= 0x85EBCA6B;
+        hash ^= hash >>> 13;
+        hash *= 0xC2B2AE35;
+        hash ^= hash >>> 16;
+        return hash & (Population.LAYOUT_COUNT - 1);
+    }
+
+    /**
+     * Makes a copy of the Population of the tile at the specified index.
      */
-    private void flood(int i, int j) {
-        flood(i, j, false);
+    Population getPopulation(int index) {
+        return new Population(populations[index], getHumanLayout(index));
+    }
+
+    /**
+     * Returns how many tiles are water.
+     *
+     * @return an int.
+     */
+    int getWaterCount() {
+        return waterCount;
     }
 
     /**
-     * Floods the tile found in (i, j) and propagates the flood all floodable adjacent tiles.
+     * Starts a flood in the tile found in (i, j) after checking that it is floodable. The changes are added to the
+     * history, so that the flood can be undone, and the floods that were undone can no longer be redone.
      *
      * @param i the i coordinate.
      * @param j the j coordinate.
+     * @return the bounding box, in tiles, of all the tiles that changed or null if no tile changed.
      */
-    private void flood(int i, int j, boolean simulated) {
-        if (!alreadyHitInThisChainReaction.contains(tileArray[j][i]) && tileArray[j][i].isBeach()) {
-            alreadyHitInThisChainReaction.add(tileArray[j][i]);
-            if (!simulated) {
-                tileArray[j][i].setType(TileType.WATER);
+    Rectangle startFlood(int i, int j) {
+        if (i < 0 || i >= dimensions.width || j < 0 || j >= dimensions.height) {
+            throw new IllegalArgumentException("i and j must be nonnegative and smaller than the length of the array.");
+        }
+        redoCount = 0;
+        if (GameMetrics.isInstrumented()) {
+            return measureFlood(i, j);
+        }
+        return flood(index(i, j));
+    }
+
+    /**
+     * Floods like startFlood and records the flood into the GameMetrics and as an event.
+     */
+    private Rectangle measureFlood(int i, int j) {
+        Object event = GameEvents.beginFlood();
+        long start = System.nanoTime();
+        int oldWaterCount = waterCount;
+        Rectangle changedTiles = flood(index(i, j));
+        long duration = System.nanoTime() - start;
+        int tilesFlooded = waterCount - oldWaterCount;
+        if (GameMetrics.isRecording()) {
+            GameMetrics.recordFlood(duration, tilesFlooded, frontierSize);
+        }
+        GameEvents.endFlood(event, i, j, tilesFlooded);
+        return changedTiles;
+    }
+
+    /**
+     * Floods the beach region of the tile at the specified index and adds the changes to the history.
+     */
+    private Rectangle flood(int start) {
+        ensureRegions();
+        frontierSize = 0;
+        int label = labels[start];
+        if (label == NO_REGION) {
+            // Recorded as well, so that every flood can be undone, even the ones that changed nothing.
+            addToHistory(new FloodDelta(start, EMPTY_SELECTION, NO_POPULATIONS, EMPTY_SELECTION));
+            return null;
+        }
+        int[] members = regions.get(label);
+        freeLabel(label);
+        if (regionListener != null) {
+            regionListener.regionRemoved(this, members);
+        }
+        byte[] oldPopulations = new byte[members.length];
+        for (int k = 0; k < members.length; k++) {
+            int member = members[k];
+            oldPopulations[k] = populations[member];
+            labels[member] = NO_REGION;
+            changeType(member, TileType.WATER);
+        }
+        for (int member : members) {
+            promoteNeighborsToBeach(member);
+        }
+        // Only the regions touched by the new beaches changed, so only these are labeled again.
+        for (int k = 0; k < frontierSize; k++) {
+            if (labels[frontier[k]] == NO_REGION) {
+                labelRegion(frontier[k]);
             }
-            if (j != 0) {
-                if (tileArray[j - 1][i].isBeach()) {
-                    flood(i, j - 1, simulated);
+        }
+        // The members are not copied, as the region they came from no longer exists.
+        addToHistory(new FloodDelta(start, members, oldPopulations, Arrays.copyOf(frontier, frontierSize)));
+        Rectangle bounds = getBounds(members, members.length);
+        if (frontierSize != 0) {
+            bounds.add(getBounds(frontier, frontierSize));
+        }
+        return bounds;
+    }
+
+    /**
+     * Adds the changes of a flood to the history, dropping the oldest ones while the history is over its budget.
+     */
+    private void addToHistory(FloodDelta delta) {
+        history.addLast(delta);
+        historySize += delta.getSize();
+        trimHistory();
+    }
+
+    private void trimHistory() {
+        while (historySize > historyBudget) {
+            historySize -= history.removeFirst().getSize();
+        }
+    }
+
+    private void clearHistory() {
+        history.clear();
+        historySize = 0;
+        redoCount = 0;
+    }
+
+    /**
+     * Sets how many bytes the history of floods may keep alive. The oldest floods are dropped, and can no longer be
+     * undone, when the history is over its budget.
+     *
+     * @param historyBudget a nonnegative number of bytes
+     */
+    void setHistoryBudget(long historyBudget) {
+        if (historyBudget < 0) {
+            throw new IllegalArgumentException("historyBudget must be nonnegative.");
+        }
+        this.historyBudget = historyBudget;
+        trimHistory();
+    }
+
+    boolean canUndo() {
+        return !history.isEmpty();
+    }
+
+    boolean canRedo() {
+        return redoCount != 0;
+    }
+
+    /**
+     * Undoes the last flood in the history. Only the tiles that the flood changed, and the regions that joined the
+     * tiles it turned into beaches, are touched, so this costs about as much as the flood did.
+     *
+     * @return the bounding box, in tiles, of all the tiles that changed or null if no tile changed.
+     */
+    Rectangle undo() {
+        if (!canUndo()) {
+            throw new IllegalStateException("There is no flood to undo.");
+        }
+        FloodDelta delta = history.removeLast();
+        historySize -= delta.getSize();
+        if (redoCount == redoStarts.length) {
+            redoStarts = Arrays.copyOf(redoStarts, 2 * redoCount);
+        }
+        redoStarts[redoCount++] = delta.start;
+        if (delta.flooded.length == 0) {
+            return null;
+        }
+        // The regions of the promoted tiles lose their labels, as they may have joined other regions through them.
+        ArrayList<int[]> dissolved = new ArrayList<int[]>();
+        for (int promoted : delta.promoted) {
+            int label = labels[promoted];
+            if (label != NO_REGION) {
+                int[] members = regions.get(label);
+                freeLabel(label);
+                for (int member : members) {
+                    labels[member] = NO_REGION;
+                }
+                if (regionListener != null) {
+                    regionListener.regionRemoved(this, members);
+                }
+                dissolved.add(members);
+            }
+        }
+        for (int promoted : delta.promoted) {
+            changeType(promoted, TileType.HILL);
+        }
+        for (int k = 0; k < delta.flooded.length; k++) {
+            int member = delta.flooded[k];
+            changeType(member, TileType.BEACH);
+            if (hashValid) {
+                hash ^= getKey(member, TileType.BEACH.ordinal(), 0);
+                hash ^= getKey(member, TileType.BEACH.ordinal(), delta.populations[k]);
+            }
+            populations[member] = delta.populations[k];
+            totalPopulation += delta.populations[k];
+        }
+        // The flooded region is exactly what it was before the flood, as everything around it is too.
+        int label = addRegion(delta.flooded);
+        int population = 0;
+        for (int k = 0; k < delta.flooded.length; k++) {
+            labels[delta.flooded[k]] = label;
+            population += delta.populations[k];
+        }
+        if (regionListener != null) {
+            regionListener.regionAdded(this, delta.flooded, population);
+        }
+        // What is left of the dissolved regions is labeled again, split as it was before the flood.
+        for (int[] members : dissolved) {
+            for (int member : members) {
+                if (labels[member] == NO_REGION && isBeach(member)) {
+                    labelRegion(member);
                 }
             }
-            if (j != tileArray.length - 1) {
-                if (tileArray[j + 1][i].isBeach()) {
-                    flood(i, j + 1, simulated);
+        }
+        Rectangle bounds = getBounds(delta.flooded, delta.flooded.length);
+        if (delta.promoted.length != 0) {
+            bounds.add(getBounds(delta.promoted, delta.promoted.length));
+        }
+        return bounds;
+    }
+
+    /**
+     * Floods again the tile of the last flood that was undone.
+     *
+     * @return the bounding box, in tiles, of all the tiles that changed or null if no tile changed.
+     */
+    Rectangle redo() {
+        if (!canRedo()) {
+            throw new IllegalStateException("There is no flood to redo.");
+        }
+        return flood(redoStarts[--redoCount]);
+    }
+
+    /**
+     * Returns the bounding box, in tiles, of the first count (at least one) tiles of an array of indices.
+     */
+    private Rectangle getBounds(int[] indices, int count) {
+        int minI = dimensions.width;
+        int minJ = dimensions.height;
+        int maxI = 0;
+        int maxJ = 0;
+        for (int k = 0; k < count; k++) {
+            int i = indices[k] % dimensions.width;
+            int j = indices[k] / dimensions.width;
+            minI = Math.min(minI, i);
+            minJ = Math.min(minJ, j);
+            maxI = Math.max(maxI, i);
+            maxJ = Math.max(maxJ, j);
+        }
+        return new Rectangle(minI, minJ, maxI - minI + 1, maxJ - minJ + 1);
+    }
+
+    /**
+     * Sets all hills around the tile at the specified index (diagonals included) to beach and records them in the
+     * frontier buffer.
+     * <p/>
+     * As every hill that was next to water already became a beach, only the neighbors of the tiles that were just
+     * flooded need to be checked after a flood.
+     *
+     * @param index the index of a tile that was just flooded
+     */
+    private void promoteNeighborsToBeach(int index) {
+        int width = dimensions.width;
+        int i = index % width;
+        int j = index / width;
+        for (int y = Math.max(j - 1, 0); y <= Math.min(j + 1, dimensions.height - 1); y++) {
+            for (int x = Math.max(i - 1, 0); x <= Math.min(i + 1, width - 1); x++) {
+                int neighbor = index(x, y);
+                if (types[neighbor] == TileType.HILL.ordinal()) {
+                    changeType(neighbor, TileType.BEACH);
+                    if (frontierSize == frontier.length) {
+                        frontier = Arrays.copyOf(frontier, 2 * frontierSize);
+                    }
+                    frontier[frontierSize++] = neighbor;
                 }
             }
+        }
+    }
+
+    /**
+     * Collects into the region buffer the indices of all the tiles that a flood starting at the specified index would
+     * hit. These are the beach tiles connected to the starting tile. If the starting tile is not a beach, nothing is
+     * collected.
+     * <p/>
+     * This method uses an explicit work list instead of recursion, so it works for regions of any size.
+     *
+     * @param start the index of the tile where the flood starts
+     * @return how many indices were collected into the region buffer
+     */
+    private int collectRegion(int start) {
+        if (!isBeach(start)) {
+            return 0;
+        }
+        int width = dimensions.width;
+        int size = 0;
+        region[size++] = start;
+        setVisited(start);
+        // The region buffer doubles as the work list: everything before head has already been expanded.
+        for (int head = 0; head < size; head++) {
+            int index = region[head];
+            int i = index % width;
+            int j = index / width;
+            if (j != 0) {
+                size = visit(index - width, size);
+            }
+            if (j != dimensions.height - 1) {
+                size = visit(index + width, size);
+            }
             if (i != 0) {
-                if (tileArray[j][i - 1].isBeach()) {
-                    flood(i - 1, j, simulated);
+                size = visit(index - 1, size);
+            }
+            if (i != width - 1) {
+                size = visit(index + 1, size);
+            }
+        }
+        // Only clear what was set, so that the cost is proportional to the size of the region.
+        for (int k = 0; k < size; k++) {
+            visited[region[k] >>> 6] &= ~(1L << region[k]);
+        }
+        return size;
+    }
+
+    /**
+     * Appends the specified index to the region buffer if it is an unvisited beach.
+     *
+     * @return the new size of the region buffer
+     */
+    private int visit(int index, int size) {
+        if (isBeach(index) && (visited[index >>> 6] & (1L << index)) == 0) {
+            if (size == region.length) {
+                region = Arrays.copyOf(region, 2 * size);
+            }
+            region[size++] = index;
+            setVisited(index);
+        }
+        return size;
+    }
+
+    private void setVisited(int index) {
+        // Shifts of a long only use the lowest six bits of the distance, so this is the bit of index in its word.
+        visited[index >>> 6] |= 1L << index;
+    }
+
+    /**
+     * Labels every beach region of the matrix from scratch.
+     */
+    private void labelRegions() {
+        // The RegionListener is told about all the regions at once, instead of about each one as it is labeled.
+        regionsValid = false;
+        Arrays.fill(labels, NO_REGION);
+        regions.clear();
+        freeLabelCount = 0;
+        for (int index = 0; index < labels.length; index++) {
+            if (labels[index] == NO_REGION && isBeach(index)) {
+                labelRegion(index);
+            }
+        }
+        regionsValid = true;
+        if (regionListener != null) {
+            regionListener.regionsLabeled(this, new ArrayList<int[]>(regions), getRegionPopulations());
+        }
+    }
+
+    /**
+     * Returns how many humans live in each region, indexed by label.
+     */
+    private int[] getRegionPopulations() {
+        int[] regionPopulations = new int[regions.size()];
+        for (int label = 0; label < regionPopulations.length; label++) {
+            int[] members = regions.get(label);
+            if (members != null) {
+                for (int member : members) {
+                    regionPopulations[label] += populations[member];
                 }
             }
-            if (i != tileArray.length - 1) {
-                if (tileArray[j][i + 1].isBeach()) {
-                    flood(i + 1, j, simulated);
+        }
+        return regionPopulations;
+    }
+
+    /**
+     * Gives a new label to the beach region that contains the tile at the specified index. The regions that this region
+     * absorbed lose their labels, and the RegionListener is told that they were removed before it is told about the new
+     * region.
+     *
+     * @param start the index of a beach tile
+     */
+    private void labelRegion(int start) {
+        int size = collectRegion(start);
+        int[] members = Arrays.copyOf(region, size);
+        // Not an absorbed label, as these are only freed below.
+        int label = addRegion(members);
+        int population = 0;
+        for (int member : members) {
+            int oldLabel = labels[member];
+            // The other members of an absorbed region still have its label after it was freed.
+            if (oldLabel != NO_REGION && regions.get(oldLabel) != null) {
+                int[] absorbed = regions.get(oldLabel);
+                freeLabel(oldLabel);
+                if (regionsValid && regionListener != null) {
+                    regionListener.regionRemoved(this, absorbed);
                 }
             }
+            labels[member] = label;
+            population += populations[member];
+        }
+        if (regionsValid && regionListener != null) {
+            regionListener.regionAdded(this, members, population);
         }
     }
 
-    private void initialize() {
-        configuration.getInitializationAlgorithm().initialize(this);
-        updateWaterCount();
-        assertMinimumWaterLevel();
-        updateTiles(true);
+    /**
+     * Stores the members of a new region under a free label, or under a new one if no label is free.
+     *
+     * @return the label of the region
+     */
+    private int addRegion(int[] members) {
+        if (freeLabelCount != 0) {
+            int label = freeLabels[--freeLabelCount];
+            regions.set(label, members);
+            return label;
+        }
+        regions.add(members);
+        return regions.size() - 1;
+    }
+
+    /**
+     * Makes a label map to null and lets addRegion give it to a new region. The tiles of the region must get other
+     * labels before then.
+     */
+    private void freeLabel(int label) {
+        regions.set(label, null);
+        if (freeLabelCount == freeLabels.length) {
+            freeLabels = Arrays.copyOf(freeLabels, 2 * freeLabelCount);
+        }
+        freeLabels[freeLabelCount++] = label;
+    }
+
+    /**
+     * Labels the regions again if a tile was changed from outside of a flood since they were last labeled.
+     */
+    private void ensureRegions() {
+        if (!regionsValid) {
+            labelRegions();
+        }
+    }
+
+    /**
+     * Sets the RegionListener told about the regions of this TileMatrix as they change. A new RegionListener is told
+     * about all the current regions right away.
+     *
+     * @param regionListener a RegionListener or null to stop telling
+     */
+    void setRegionListener(RegionListener regionListener) {
+        this.regionListener = regionListener;
+        if (regionListener != null) {
+            if (regionsValid) {
+                regionListener.regionsLabeled(this, new ArrayList<int[]>(regions), getRegionPopulations());
+            } else {
+                labelRegions();
+            }
+        }
     }
 
+    private boolean isBeach(int index) {
+        return types[index] == TileType.BEACH.ordinal();
+    }
+
+    private boolean isWater(int index) {
+        return types[index] == TileType.WATER.ordinal();
+    }
+
+    /**
+     * Initializes (or reinitializes) the tiles using the specified InitializationAlgorithm. This method also updates
+     * the tiles considered beaches.
+     * <p/>
+     * Every random decision is derived from the seed, so the same InitializationAlgorithm and seed always give the
+     * same tiles and humans.
+     *
+     * @param initializationAlgorithm the InitializationAlgorithm
+     * @param seed                    the seed of the board
+     */
+    void initialize(InitializationAlgorithm initializationAlgorithm, long seed) {
+        loading = true;
+        try {
+            initializationAlgorithm.initialize(this, seed);
+        } finally {
+            loading = false;
+        }
+        countTiles();
+        // The streams from zero up are left to the initialization algorithm.
+        SplitRandom random = new SplitRandom(seed).split(-1);
+        assertMinimumWaterLevel(random);
+        updateTiles();
+        labelRegions();
+        clearHistory();
+        humanSalt = random.nextInt();
+    }
+
+    /**
+     * Returns a copy of the tiles of this TileMatrix. Must only be called right after it is initialized, as only then
+     * the populations can be told from the types of the tiles.
+     *
+     * @return a GeneratedBoard
+     */
+    GeneratedBoard toGeneratedBoard() {
+        return new GeneratedBoard(types.clone(), humanSalt);
+    }
+
+    /**
+     * Replaces all the tiles of this TileMatrix by the tiles of a GeneratedBoard of the same dimensions.
+     *
+     * @param board the GeneratedBoard
+     */
+    void load(GeneratedBoard board) {
+        if (board.types.length != types.length) {
+            throw new IllegalArgumentException("board must have as many tiles as this TileMatrix.");
+        }
+        System.arraycopy(board.types, 0, types, 0, types.length);
+        for (int index = 0; index < types.length; index++) {
+            populations[index] = (byte) TILE_TYPES[types[index]].suggestedPopulation;
+        }
+        humanSalt = board.humanSalt;
+        countTiles();
+        labelRegions();
+        clearHistory();
+    }
+
+    /**
+     * Returns the packed array with the ordinal of the TileType of every tile. The array is shared with this TileMatrix,
+     * so that a GameFile can read and write it without copying. After writing it, restore must be called.
+     *
+     * @return an array of bytes, indexed by {@code j * width + i}
+     */
+    byte[] getTypeArray() {
+        return types;
+    }
+
+    /**
+     * Returns the packed array with the population of every tile. Shared in the same way as the array of types.
+     *
+     * @return an array of bytes, indexed by {@code j * width + i}
+     */
+    byte[] getPopulationArray() {
+        return populations;
+    }
+
+    int getHumanSalt() {
+        return humanSalt;
+    }
+
+    /**
+     * Brings the running counters up to date after the packed arrays were written directly, as when a game is loaded.
+     * The regions are only labeled again when they are first needed.
+     *
+     * @param humanSalt the salt of the layouts of the humans of the restored game
+     */
+    void restore(int humanSalt) {
+        this.humanSalt = humanSalt;
+        countTiles();
+        invalidateRegions();
+    }
+
+    /**
+     * Counts the water tiles and the humans again, after the matrix was filled without updating the running counters.
+     * The hash is computed again the next time it is asked for.
+     */
+    private void countTiles() {
+        int water = TileType.WATER.ordinal();
+        int newWaterCount = 0;
+        int newTotalPopulation = 0;
+        for (int index = 0; index < types.length; index++) {
+            // Without a branch, as water and land tiles are mixed in no predictable order.
+            newWaterCount += (types[index] ^ water) == 0 ? 1 : 0;
+            newTotalPopulation += populations[index];
+        }
+        waterCount = newWaterCount;
+        totalPopulation = newTotalPopulation;
+        hashValid = false;
+    }
+
+    /**
+     * Returns all the tiles that a flood starting at (i, j) would hit, without changing any of them.
+     *
+     * @param i the i coordinate.
+     * @param j the j coordinate.
+     * @return an ArrayList of Tile views, empty if the tile at (i, j) is not a beach.
+     */
     ArrayList<Tile> getSelection(int i, int j) {
-        flood(i, j, true);
-        ArrayList<Tile> selection = new ArrayList<Tile>(alreadyHitInThisChainReaction.size());
-        selection.addAll(alreadyHitInThisChainReaction);
-        alreadyHitInThisChainReaction.clear();
+        int[] members = getSelectionIndices(i, j);
+        ArrayList<Tile> selection = new ArrayList<Tile>(members.length);
+        for (int member : members) {
+            selection.add(new Tile(this, member));
+        }
         return selection;
     }
 
     /**
-     * Guarantees that there is at least one water tile on the array. If (and only if) water was added, it also updates
-     * the water count.
+     * Returns the indices ({@code j * width + i}) of all the tiles that a flood starting at (i, j) would hit. The
+     * returned array is shared with this TileMatrix and must not be modified.
+     *
+     * @param i the i coordinate.
+     * @param j the j coordinate.
+     * @return an array of indices, empty if the tile at (i, j) is not a beach.
      */
-    private void assertMinimumWaterLevel() {
-        if (getWaterCount() == 0) {
-            int x = GameData.random.nextInt(tileArray.length);
-            int y = GameData.random.nextInt(tileArray.length);
-            tileArray[y][x].setType(TileType.WATER);
-            updateWaterCount();
+    int[] getSelectionIndices(int i, int j) {
+        if (GameMetrics.isRecording()) {
+            long start = System.nanoTime();
+            int[] selection = findSelectionIndices(i, j);
+            GameMetrics.recordSelection(System.nanoTime() - start);
+            return selection;
         }
+        return findSelectionIndices(i, j);
+    }
+
+    private int[] findSelectionIndices(int i, int j) {
+        ensureRegions();
+        int label = labels[index(i, j)];
+        if (label == NO_REGION) {
+            return EMPTY_SELECTION;
+        }
+        return regions.get(label);
     }
 
     /**
-     * Reinitializes the Tile array with a distribution of tiles based on WATER_RATE and on the generator mode. This
-     * method also updates the tiles considered beaches.
+     * Guarantees that there is at least one water tile on the array.
      */
-    void reinitialize() {
-        initialize();
+    private void assertMinimumWaterLevel(SplitRandom random) {
+        if (getWaterCount() == 0) {
+            int x = random.nextInt(dimensions.width);
+            int y = random.nextInt(dimensions.height);
+            setTileType(index(x, y), TileType.WATER);
+        }
     }
 
     /**
-     * Iterates over the TileMatrix setting all tiles that have at least one water neighbor to beach.
+     * Iterates over the TileMatrix setting all tiles that have at least one water neighbor to beach. Used when the
+     * matrix is initialized, after floods only the neighbors of the flooded tiles are updated.
      */
-    private void updateTiles(boolean overwrite) {
-        for (int j = 0; j < tileArray.length; j++) { // Iterate over the matrix using i and j.
-            for (int i = 0; i < tileArray.length; i++) {
-                Tile tile = tileArray[j][i];
-                if (!tile.isWater() && !tile.isBeach()) { // If the current tile is not water.
-                    setToBeachIfThereIsWaterNeighbor(j, i, overwrite);
+    private void updateTiles() {
+        for (int j = 0; j < dimensions.height; j++) { // Iterate over the matrix using i and j.
+            for (int i = 0; i < dimensions.width; i++) {
+                int index = index(i, j);
+                if (!isWater(index) && !isBeach(index)) { // If the current tile is not water.
+                    setToBeachIfThereIsWaterNeighbor(j, i);
                 }
             }
         }
     }
 
     /**
-     * Sets the specified Tile to a beach if it has at least one water neighbor. If specified to overwrite, creates a
-     * new Tile to replace the old one. This is used in the matrix initialization when a Tile does not become a beach
-     * after a flood, but starts as one instead. Starting as a beach is different from becoming one as Tile's
-     * constructor takes the TileType into account.
+     * Replaces the specified Tile by a new beach Tile if it has at least one water neighbor. Tiles that start as
+     * beaches are created as beaches, which is different from becoming one after a flood as Tile's constructor takes
+     * the TileType into account.
      *
-     * @param j         the j coordinate
-     * @param i         the i coordinate
-     * @param overwrite if true, creates a new Tile object to replace the old one
+     * @param j the j coordinate
+     * @param i the i coordinate
      */
-    private void setToBeachIfThereIsWaterNeighbor(int j, int i, boolean overwrite) {
-        if (tileArray[j][i].isWater()) {
+    private void setToBeachIfThereIsWaterNeighbor(int j, int i) {
+        if (isWater(index(i, j))) {
             throw new AssertionError("Called setToBeachIfThereIsWaterNeighbor for a water tile!");
         }
         for (int b = -1; b <= 1; b++) { // Iterate over all adjacent tiles.
             int y = j + b;
-            if (y >= 0 && y < tileArray.length) {
+            if (y >= 0 && y < dimensions.height) {
                 for (int a = -1; a <= 1; a++) {
                     int x = i + a;
-                    if (x >= 0 && x < tileArray.length) {
-                        if (tileArray[y][x].isWater()) { // Looking for water.
-                            // If you find it, create a beach Tile or set the current Tile to beach.
-                            if (overwrite) {
-                                tileArray[j][i] = new Tile(TileType.BEACH);
-                            } else {
-                                tileArray[j][i].setType(TileType.BEACH);
-                            }
+                    if (x >= 0 && x < dimensions.width) {
+                        if (isWater(index(x, y))) { // Looking for water.
+                            // If you find it, create a beach Tile.
+                            placeTile(i, j, TileType.BEACH);
                             return; // And stop looking.
                         }
                     }
@@ -203,33 +915,101 @@ public class TileMatrix {
         }
     }
 
+    /**
+     * Returns a view of the Tile at (i, j). Changing the type of the returned Tile changes this TileMatrix.
+     *
+     * @param i the i coordinate
+     * @param j the j coordinate
+     * @return a Tile backed by this TileMatrix
+     */
     public Tile getTile(int i, int j) {
-        return tileArray[j][i];
+        return new Tile(this, index(i, j));
     }
 
     /**
-     * Sets a Tile to a given coordinate pair.
+     * Sets a Tile to a given coordinate pair. The type and the population of the Tile are copied into the matrix.
      *
      * @param x    the x coordinate
      * @param y    the y coordinate
      * @param tile the Tile object
      */
     public void setTile(int x, int y, Tile tile) {
-        tileArray[y][x] = tile;
+        int population = tile.getPopulation().getTotal();
+        if (population < 0 || population > Population.MAX_POPULATION) {
+            throw new IllegalArgumentException("population must be nonnegative and at most MAX_POPULATION.");
+        }
+        setTile(index(x, y), tile.getType(), population);
     }
 
-    public int getTotalPopulation() {
-        int total = 0;
-        for (Tile[] row : tileArray) {
-            for (Tile tile : row) {
-                total += tile.getPopulation().getTotal();
+    /**
+     * Sets a new Tile of the specified type to a given coordinate pair. This is equivalent to calling
+     * {@code setTile(x, y, new Tile(type))} but does not create any objects.
+     *
+     * @param x    the x coordinate
+     * @param y    the y coordinate
+     * @param type the TileType of the new Tile
+     */
+    public void placeTile(int x, int y, TileType type) {
+        setTile(index(x, y), type, type.suggestedPopulation);
+    }
+
+    private void setTile(int index, TileType type, int population) {
+        // While loading, each thread only writes its own tiles, so nothing else may be written.
+        if (!loading) {
+            if (hashValid) {
+                hash ^= getKey(index, types[index], populations[index]) ^ getKey(index, type.ordinal(), population);
+            }
+            if (isWater(index)) {
+                waterCount--;
             }
+            if (type == TileType.WATER) {
+                waterCount++;
+            }
+            totalPopulation += population - populations[index];
+            invalidateRegions();
         }
-        return total;
+        types[index] = (byte) type.ordinal();
+        populations[index] = (byte) population;
+    }
+
+    /**
+     * Returns how many humans live in this TileMatrix. This is a running counter, so it costs the same for any size.
+     *
+     * @return a nonnegative int
+     */
+    public int getTotalPopulation() {
+        return totalPopulation;
     }
 
     public Dimension getDimensions() {
         return dimensions;
     }
 
+    /**
+     * The changes made by a flood: the tiles that turned into water with their populations and the hills that turned
+     * into beaches, which keep their populations.
+     */
+    private static final class FloodDelta {
+
+        // An estimate of what the object and its arrays take besides their elements.
+        private static final int OVERHEAD = 80;
+
+        final int start;
+        final int[] flooded;
+        final byte[] populations;
+        final int[] promoted;
+
+        FloodDelta(int start, int[] flooded, byte[] populations, int[] promoted) {
+            this.start = start;
+            this.flooded = flooded;
+            this.populations = populations;
+            this.promoted = promoted;
+        }
+
+        long getSize() {
+            return OVERHEAD + 4L * flooded.length + populations.length + 4L * promoted.length;
+        }
+
+    }
+
 }
@@ -0,0 +1,144 @@
+package org.flood.algorithms;
+
+import org.flood.Dimension;
+import org.flood.SplitRandom;
+import org.flood.TileMatrix;
+import org.flood.TileType;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * An InitializationAlgorithm that fills the board in bands of rows, which may be filled in parallel.
+ * <p/>
+ * Each band gets its own SplitRandom, split from the seed by the number of the band. The bands have a fixed height, so
+ * a seed always gives the same board, whatever the number of threads that filled it.
+ */
+abstract class BandedInitializationAlgorithm implements InitializationAlgorithm {
+
+    // Must be even, as some algorithms fill squares of side two.
+    static final int BAND_HEIGHT = 64;
+    // Boards with fewer tiles than this are filled on the calling thread, as they are filled faster than tasks start.
+    private static final int PARALLEL_THRESHOLD = 1 << 16;
+    private static final ForkJoinPool POOL = new ForkJoinPool();
+
+    @Override
+    public void initialize(TileMatrix tileMatrix, long seed) {
+        Dimension matrixDimensions = tileMatrix.getDimensions();
+        int bandCount = (matrixDimensions.height + BAND_HEIGHT - 1) / BAND_HEIGHT;
+        SplitRandom random = new SplitRandom(seed);
+        Band[] bands = new Band[bandCount];
+        for (int k = 0; k < bandCount; k++) {
+            int top = k * BAND_HEIGHT;
+            int bottom = Math.min(top + BAND_HEIGHT, matrixDimensions.height);
+            bands[k] = new Band(tileMatrix, top, bottom, seed, random.split(k));
+        }
+        if (bandCount == 1 || matrixDimensions.width * matrixDimensions.height < PARALLEL_THRESHOLD) {
+            for (Band band : bands) {
+                fillBand(band);
+            }
+        } else {
+            POOL.invoke(new FillBands(bands, 0, bandCount));
+        }
+        // Applied in order, as if the bands had been filled one after the other.
+        for (Band band : bands) {
+            band.applyDeferredTiles();
+        }
+    }
+
+    /**
+     * Fills every tile of the rows of a band. This may be called from any thread, at the same time as for other bands.
+     *
+     * @param band the Band
+     */
+    abstract void fillBand(Band band);
+
+    /**
+     * The rows from top (inclusive) to bottom (exclusive) of a TileMatrix, with the SplitRandom used to fill them. The
+     * seed of the whole board is kept as well, for values that must be the same in every band.
+     * <p/>
+     * Tiles placed above the band are only placed after all the bands are filled, as the band above may not be filled
+     * yet. Tiles placed below the band are dropped, as the band below replaces every one of them.
+     */
+    static final class Band {
+
+        final TileMatrix tileMatrix;
+        final int top;
+        final int bottom;
+        final long seed;
+        final SplitRandom random;
+        private int[] deferredX = new int[0];
+        private int[] deferredY = new int[0];
+        private TileType[] deferredTypes = new TileType[0];
+        private int deferredCount;
+
+        private Band(TileMatrix tileMatrix, int top, int bottom, long seed, SplitRandom random) {
+            this.tileMatrix = tileMatrix;
+            this.top = top;
+            this.bottom = bottom;
+            this.seed = seed;
+            this.random = random;
+        }
+
+        /**
+         * Sets a new Tile of the specified type to a given coordinate pair, which may be outside of the band.
+         *
+         * @param x    the x coordinate
+         * @param y    the y coordinate
+         * @param type the TileType of the new Tile
+         */
+        void placeTile(int x, int y, TileType type) {
+            if (y < top) {
+                if (deferredCount == deferredX.length) {
+                    int capacity = Math.max(2 * deferredCount, 16);
+                    deferredX = Arrays.copyOf(deferredX, capacity);
+                    deferredY = Arrays.copyOf(deferredY, capacity);
+                    deferredTypes = Arrays.copyOf(deferredTypes, capacity);
+                }
+                deferredX[deferredCount] = x;
+                deferredY[deferredCount] = y;
+                deferredTypes[deferredCount] = type;
+                deferredCount++;
+            } else if (y < bottom) {
+                tileMatrix.placeTile(x, y, type);
+            }
+        }
+
+        private void applyDeferredTiles() {
+            for (int k = 0; k < deferredCount; k++) {
+                tileMatrix.placeTile(deferredX[k], deferredY[k], deferredTypes[k]);
+            }
+        }
+
+    }
+
+    /**
+     * Fills a range of bands, splitting it in halves until a single band is left.
+     */
+    @SuppressWarnings("serial")
+    private class FillBands extends RecursiveAction {
+
+        private final Band[] bands;
+        private final int from;
+        private final int to;
+
+        FillBands(Band[] bands, int from, int to) {
+            this.bands = bands;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from == 1) {
+                fillBand(bands[from]);
+            } else {
+                int middle = (from + to) >>> 1;
+                invokeAll(new FillBands(bands, from, middle), new FillBands(bands, middle, to));
+            }
+        }
+
+    }
+
+}
@@ -7,22 +7,22 @@ import org.flood.*;
  * <p/>
  * Created by Bernardo on 15/05/2015.
  */
-class ComplexInitializationAlgorithm implements InitializationAlgorithm {
+class ComplexInitializationAlgorithm extends BandedInitializationAlgorithm {
 
     // Uses the same algorithm as SQUARES, but after filling a square of tiles of side two with water, there is
     // a 40 % chance of spreading water over one extra tile  that may overlap existing water and
     // a 20 % chance of spreading water over two extra tiles that may overlap existing water.
     @Override
-    public void initialize(TileMatrix tileMatrix) {
+    void fillBand(Band band) {
         double randomDouble;
-        Dimension matrixDimensions = tileMatrix.getDimensions();
-        for (int j = 0; j < matrixDimensions.height; j += 2) {
+        Dimension matrixDimensions = band.tileMatrix.getDimensions();
+        for (int j = band.top; j < band.bottom; j += 2) {
             for (int i = 0; i < matrixDimensions.width; i += 2) {
                 // Check if this tile will be filled with water.
-                if (GameData.random.nextDouble() < GameData.WATER_RATE) {
+                if (band.random.nextDouble() < GameData.WATER_RATE) {
                     int spreading = 0;
                     // Get how many tiles will get the water spread effect.
-                    randomDouble = GameData.random.nextDouble();
+                    randomDouble = band.random.nextDouble();
                     if (randomDouble < 0.2) {
                         spreading = 2;
                     } else if (randomDouble < 0.4) {
@@ -38,31 +38,31 @@ class ComplexInitializationAlgorithm implements InitializationAlgorithm {
                                 if (x >= 0 && x < matrixDimensions.width) {
                                     // Check if the algorithm is filling the square or hitting the margins.
                                     if ((a == 0 || a == 1) && (b == 0 || b == 1)) {
-                                        tileMatrix.setTile(x, y, new Tile(TileType.WATER));
+                                        band.placeTile(x, y, TileType.WATER);
                                     } else {
                                         // Is there water to spread and we are not in a diagonal?
                                         if (spreading != 0 && !((a == -1 || a == 2) && (b == -1 || b == 2))) {
                                             // Check if this is the marginal tile to start filling.
-                                            if (remainingNeighbors == 1 || GameData.random.nextInt(notDiagonalNeighbors) == 0) {
+                                            if (remainingNeighbors == 1 || band.random.nextInt(notDiagonalNeighbors) == 0) {
                                                 // Fill the first tile.
-                                                tileMatrix.setTile(x, y, new Tile(TileType.WATER));
+                                                band.placeTile(x, y, TileType.WATER);
                                                 if (spreading == 2) {
                                                     // If two tiles should be filled, fill the second tile.
                                                     // Spread, preferentially, to the left.
                                                     if (a == -1) {
-                                                        spreadWater(x, y, Direction.WEST, tileMatrix);
+                                                        spreadWater(x, y, Direction.WEST, band);
                                                     }
                                                     // Spread, preferentially, to the right.
                                                     else if (a == 2) {
-                                                        spreadWater(x, y, Direction.EAST, tileMatrix);
+                                                        spreadWater(x, y, Direction.EAST, band);
                                                     }
                                                     // Spread, preferentially, towards north.
                                                     else if (b == -1) {
-                                                        spreadWater(x, y, Direction.NORTH, tileMatrix);
+                                                        spreadWater(x, y, Direction.NORTH, band);
                                                     }
                                                     // Spread, preferentially, towards south.
                                                     else {
-                                                        spreadWater(x, y, Direction.SOUTH, tileMatrix);
+                                                        spreadWater(x, y, Direction.SOUTH, band);
                                                     }
                                                 }
                                                 // The water was spread. It shall now be zeroed.
@@ -86,7 +86,7 @@ class ComplexInitializationAlgorithm implements InitializationAlgorithm {
                             for (int a = 0; a < 2; a++) {
                                 int x = i + a;
                                 if (x < matrixDimensions.width) {
-                                    tileMatrix.setTile(x, y, new Tile(TileType.HILL));
+                                    band.placeTile(x, y, TileType.HILL);
                                 }
                             }
                         }
@@ -127,13 +127,15 @@ class ComplexInitializationAlgorithm implements InitializationAlgorithm {
 
     /**
      * Attempts to spread water towards a given direction from (x, y). This method does not alter the type of a
-     * Tile, instead it overwrites the old Tile (if there was one).
+     * Tile, instead it places a new Tile (overwriting the old one, if there was one).
      *
      * @param x         the x coordinate
      * @param y         the y coordinate
      * @param direction the direction towards where water will be spread
+     * @param band      the Band being filled
      */
-    private void spreadWater(int x, int y, Direction direction, TileMatrix matrix) {
+    private void spreadWater(int x, int y, Direction direction, Band band) {
+        Dimension matrixDimensions = band.tileMatrix.getDimensions();
         if (direction == Direction.WEST) {
             if (x > 0) {
                 x--;
@@ -143,7 +145,7 @@ class ComplexInitializationAlgorithm implements InitializationAlgorithm {
                 y++;
             }
         } else if (direction == Direction.EAST) {
-            if (x < matrix.getDimensions().width - 1) {
+            if (x < matrixDimensions.width - 1) {
                 x++;
             } else if (y > 0) {
                 y--;
@@ -159,7 +161,7 @@ class ComplexInitializationAlgorithm implements InitializationAlgorithm {
                 x++;
             }
         } else {
-            if (y < matrix.getDimensions().height - 1) {
+            if (y < matrixDimensions.height - 1) {
                 y++;
             } else if (x > 0) {
                 x--;
@@ -167,7 +169,7 @@ class ComplexInitializationAlgorithm implements InitializationAlgorithm {
                 x++;
             }
         }
-        matrix.setTile(x, y, new Tile(TileType.WATER));
+        band.placeTile(x, y, TileType.WATER);
     }
 
     @Override
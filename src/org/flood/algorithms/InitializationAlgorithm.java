@@ -9,6 +9,12 @@ import org.flood.TileMatrix;
  */
 public interface InitializationAlgorithm {
 
-    void initialize(TileMatrix tileMatrix);
+    /**
+     * Fills every tile of a TileMatrix. The same seed must always give the same tiles.
+     *
+     * @param tileMatrix the TileMatrix
+     * @param seed       the seed of all the random decisions
+     */
+    void initialize(TileMatrix tileMatrix, long seed);
 
 }
@@ -16,6 +16,7 @@ public abstract class InitializationAlgorithms {
     static {
         ALGORITHMS.add(new SimpleInitializationAlgorithm());
         ALGORITHMS.add(new SquaresInitializationAlgorithm());
+        ALGORITHMS.add(new TerrainInitializationAlgorithm());
         ALGORITHMS.add(new ComplexInitializationAlgorithm());
         ALGORITHMS = Collections.unmodifiableList(ALGORITHMS);
     }
@@ -33,4 +34,19 @@ public abstract class InitializationAlgorithms {
         return ALGORITHMS;
     }
 
+    /**
+     * Returns the InitializationAlgorithm with the specified name, as given by its toString method.
+     *
+     * @param name the name of the InitializationAlgorithm
+     * @return an InitializationAlgorithm or null if there is none with the specified name
+     */
+    public static InitializationAlgorithm getInitializationAlgorithm(String name) {
+        for (InitializationAlgorithm algorithm : ALGORITHMS) {
+            if (algorithm.toString().equals(name)) {
+                return algorithm;
+            }
+        }
+        return null;
+    }
+
 }
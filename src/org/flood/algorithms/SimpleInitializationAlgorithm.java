@@ -7,20 +7,18 @@ import org.flood.*;
  * <p/>
  * Created by Bernardo on 15/05/2015.
  */
-class SimpleInitializationAlgorithm implements InitializationAlgorithm {
+class SimpleInitializationAlgorithm extends BandedInitializationAlgorithm {
 
     @Override
-    public void initialize(TileMatrix tileMatrix) {
-        Dimension matrixDimensions = tileMatrix.getDimensions();
-        for (int y = 0; y < matrixDimensions.height; y++) {
+    void fillBand(Band band) {
+        Dimension matrixDimensions = band.tileMatrix.getDimensions();
+        for (int y = band.top; y < band.bottom; y++) {
             for (int x = 0; x < matrixDimensions.width; x++) {
-                Tile tile;
-                if (GameData.random.nextDouble() < GameData.WATER_RATE) {
-                    tile = new Tile(TileType.WATER);
+                if (band.random.nextDouble() < GameData.WATER_RATE) {
+                    band.placeTile(x, y, TileType.WATER);
                 } else {
-                    tile = new Tile(TileType.HILL);
+                    band.placeTile(x, y, TileType.HILL);
                 }
-                tileMatrix.setTile(x, y, tile);
             }
         }
     }
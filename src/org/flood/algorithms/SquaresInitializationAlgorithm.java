@@ -7,27 +7,26 @@ import org.flood.*;
  * <p/>
  * Created by Bernardo on 15/05/2015.
  */
-class SquaresInitializationAlgorithm implements InitializationAlgorithm {
+class SquaresInitializationAlgorithm extends BandedInitializationAlgorithm {
 
     @Override
-    public void initialize(TileMatrix tileMatrix) {
+    void fillBand(Band band) {
+        TileMatrix tileMatrix = band.tileMatrix;
         Dimension matrixDimensions = tileMatrix.getDimensions();
-        for (int y = 0; y < matrixDimensions.height; y++) {
+        for (int y = band.top; y < band.bottom; y++) {
             for (int x = 0; x < matrixDimensions.width; x++) {
                 if (y % 2 == 0) {
                     if (x % 2 == 0) {
-                        Tile tile;
-                        if (GameData.random.nextDouble() < GameData.WATER_RATE) {
-                            tile = new Tile(TileType.WATER);
+                        if (band.random.nextDouble() < GameData.WATER_RATE) {
+                            band.placeTile(x, y, TileType.WATER);
                         } else {
-                            tile = new Tile(TileType.HILL);
+                            band.placeTile(x, y, TileType.HILL);
                         }
-                        tileMatrix.setTile(x, y, tile);
                     } else {
-                        tileMatrix.setTile(x, y, new Tile(tileMatrix.getTile(x - 1, y).getType()));
+                        band.placeTile(x, y, tileMatrix.getTileType(x - 1, y));
                     }
                 } else {
-                    tileMatrix.setTile(x, y, new Tile(tileMatrix.getTile(x, y - 1).getType()));
+                    band.placeTile(x, y, tileMatrix.getTileType(x, y - 1));
                 }
             }
         }
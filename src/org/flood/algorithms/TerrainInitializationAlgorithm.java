@@ -0,0 +1,131 @@
+package org.flood.algorithms;
+
+import org.flood.SplitRandom;
+import org.flood.TileType;
+
+import java.util.Arrays;
+
+/**
+ * An initialization algorithm that draws natural coastlines from value noise.
+ * <p/>
+ * The height of a tile is the sum of a few octaves of noise. An octave has a random value at each corner of a lattice
+ * of square cells and smoothly interpolates these inside the cells. Tiles below the water level are water. The value
+ * at a corner only depends on the seed and on the corner, so each band is filled without looking at the others and the
+ * bands meet without seams.
+ * <p/>
+ * The rows are filled one at a time. Each octave keeps the two rows of corners around the current row and the heights
+ * of the row are added up in a single buffer, so filling a band takes memory for a few rows only.
+ */
+class TerrainInitializationAlgorithm extends BandedInitializationAlgorithm {
+
+    // From the widest octave, which shapes the coasts, to the narrowest, which makes them rugged.
+    private static final int[] CELL_SIDES = {16, 8, 4};
+    private static final float[] AMPLITUDES = {0.55f, 0.3f, 0.15f};
+    // Makes about GameData.WATER_RATE of the tiles water.
+    private static final float WATER_LEVEL = 0.375f;
+
+    @Override
+    void fillBand(Band band) {
+        int width = band.tileMatrix.getDimensions().width;
+        Octave[] octaves = new Octave[CELL_SIDES.length];
+        for (int k = 0; k < octaves.length; k++) {
+            octaves[k] = new Octave(SplitRandom.mix64(band.seed + k), CELL_SIDES[k], AMPLITUDES[k], width);
+        }
+        float[] heights = new float[width];
+        for (int y = band.top; y < band.bottom; y++) {
+            Arrays.fill(heights, 0);
+            for (Octave octave : octaves) {
+                octave.addRow(y, heights);
+            }
+            for (int x = 0; x < width; x++) {
+                band.placeTile(x, y, heights[x] < WATER_LEVEL ? TileType.WATER : TileType.HILL);
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "Terrain";
+    }
+
+    /**
+     * One octave of value noise, with the rows of corners it needs for the current row of a band.
+     */
+    private static final class Octave {
+
+        private static final long ROW_GAMMA = 0x9E3779B97F4A7C15L;
+        private static final long COLUMN_GAMMA = 0xC2B2AE3D27D4EB4FL;
+        private static final float VALUE_UNIT = 0x1.0p-24f;
+
+        private final long key;
+        private final int side;
+        private final float amplitude;
+        // The smoothstep weight of each offset inside a cell.
+        private final float[] weights;
+        // The values of the corners above and below the current row, and their vertical interpolation.
+        private float[] upper;
+        private float[] lower;
+        private final float[] columns;
+        // The row of cells of the current row, -1 before the first row.
+        private int cellRow = -1;
+
+        Octave(long key, int side, float amplitude, int width) {
+            this.key = key;
+            this.side = side;
+            this.amplitude = amplitude;
+            weights = new float[side];
+            for (int offset = 0; offset < side; offset++) {
+                float t = (float) offset / side;
+                weights[offset] = t * t * (3 - 2 * t);
+            }
+            int cornerCount = width / side + 2;
+            upper = new float[cornerCount];
+            lower = new float[cornerCount];
+            columns = new float[cornerCount];
+        }
+
+        /**
+         * Adds the heights of this octave for a row to the heights in the buffer. The rows must be given in order.
+         */
+        void addRow(int y, float[] heights) {
+            int newCellRow = y / side;
+            if (newCellRow != cellRow) {
+                if (cellRow != -1 && newCellRow == cellRow + 1) {
+                    // The corners below the previous row are the corners above this one.
+                    float[] swap = upper;
+                    upper = lower;
+                    lower = swap;
+                } else {
+                    fillCorners(newCellRow, upper);
+                }
+                fillCorners(newCellRow + 1, lower);
+                cellRow = newCellRow;
+            }
+            float weight = weights[y - cellRow * side];
+            for (int column = 0; column < columns.length; column++) {
+                columns[column] = amplitude * (upper[column] + (lower[column] - upper[column]) * weight);
+            }
+            int x = 0;
+            for (int column = 0; x < heights.length; column++) {
+                float left = columns[column];
+                float delta = columns[column + 1] - left;
+                int end = Math.min(x + side, heights.length);
+                for (int offset = 0; x < end; offset++, x++) {
+                    heights[x] += left + delta * weights[offset];
+                }
+            }
+        }
+
+        /**
+         * Fills an array with the values, from zero up to one, of the corners of a row of the lattice.
+         */
+        private void fillCorners(int row, float[] corners) {
+            long rowKey = key + row * ROW_GAMMA;
+            for (int column = 0; column < corners.length; column++) {
+                corners[column] = (SplitRandom.mix64(rowKey + column * COLUMN_GAMMA) >>> 40) * VALUE_UNIT;
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,55 @@
+package org.flood.metrics;
+
+import org.flood.GameSize;
+import org.flood.algorithms.InitializationAlgorithm;
+
+/**
+ * The interface of the objects that record the floods, the generated boards and the painted frames as events, such as
+ * JDK Flight Recorder events.
+ * <p/>
+ * Each begin method is called right before the work starts and returns an event, or null if events of its kind are not
+ * being recorded. The matching end method is only called with events that are not null, right after the work ends, on
+ * the same thread. Implementations are found by GameEvents with a ServiceLoader.
+ */
+public interface EventSink {
+
+    Object beginFlood();
+
+    /**
+     * Ends the event of a flood.
+     *
+     * @param event      the event returned by beginFlood
+     * @param i          the i coordinate of the tile clicked
+     * @param j          the j coordinate of the tile clicked
+     * @param regionSize how many tiles were flooded
+     */
+    void endFlood(Object event, int i, int j, int regionSize);
+
+    Object beginGeneration();
+
+    /**
+     * Ends the event of filling a board, whether it was generated or taken from a cache.
+     *
+     * @param event                   the event returned by beginGeneration
+     * @param initializationAlgorithm the InitializationAlgorithm of the board
+     * @param gameSize                the GameSize of the board or null if the board has a custom size
+     * @param width                   how many tiles there are in a row
+     * @param height                  how many tiles there are in a column
+     * @param cached                  whether or not the board was taken from a cache instead of generated
+     * @param tilesAllocated          for how many tiles new memory was allocated
+     */
+    void endGeneration(Object event, InitializationAlgorithm initializationAlgorithm, GameSize gameSize, int width,
+                       int height, boolean cached, int tilesAllocated);
+
+    Object beginPaint();
+
+    /**
+     * Ends the event of a painted frame.
+     *
+     * @param event        the event returned by beginPaint
+     * @param visibleTiles how many tiles were visible
+     * @param drawnTiles   how many tiles were drawn
+     */
+    void endPaint(Object event, int visibleTiles, int drawnTiles);
+
+}
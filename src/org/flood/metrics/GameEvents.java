@@ -0,0 +1,81 @@
+package org.flood.metrics;
+
+import org.flood.GameSize;
+import org.flood.algorithms.InitializationAlgorithm;
+
+import java.util.Iterator;
+import java.util.ServiceConfigurationError;
+import java.util.ServiceLoader;
+
+/**
+ * GameEvents class that forwards the events of the game to the EventSink found on the class path, if there is one.
+ * <p/>
+ * The game is built for old Java versions, so it does not depend on the JDK Flight Recorder, which is only available
+ * from Java 11 on. The flood-jfr module provides an EventSink that emits Flight Recorder events, and whether they are
+ * recorded and above which thresholds is configured by the recording. Without an EventSink, or if the one found cannot
+ * be loaded by the running Java version, every method here does nothing.
+ */
+public final class GameEvents {
+
+    // Final, so that checking for it costs nothing when there is none.
+    private static final EventSink SINK = loadSink();
+
+    private GameEvents() {
+    }
+
+    private static EventSink loadSink() {
+        try {
+            Iterator<EventSink> iterator = ServiceLoader.load(EventSink.class).iterator();
+            if (iterator.hasNext()) {
+                return iterator.next();
+            }
+        } catch (ServiceConfigurationError error) {
+            // The game is playable without its events.
+            System.err.println("Could not load an EventSink: " + error);
+        } catch (LinkageError error) {
+            System.err.println("Could not load an EventSink: " + error);
+        }
+        return null;
+    }
+
+    /**
+     * Returns whether or not there is an EventSink. GameMetrics.isInstrumented is true whenever this is.
+     *
+     * @return a boolean
+     */
+    public static boolean hasSink() {
+        return SINK != null;
+    }
+
+    public static Object beginFlood() {
+        return SINK != null ? SINK.beginFlood() : null;
+    }
+
+    public static void endFlood(Object event, int i, int j, int regionSize) {
+        if (event != null) {
+            SINK.endFlood(event, i, j, regionSize);
+        }
+    }
+
+    public static Object beginGeneration() {
+        return SINK != null ? SINK.beginGeneration() : null;
+    }
+
+    public static void endGeneration(Object event, InitializationAlgorithm initializationAlgorithm,
+                                     GameSize gameSize, int width, int height, boolean cached, int tilesAllocated) {
+        if (event != null) {
+            SINK.endGeneration(event, initializationAlgorithm, gameSize, width, height, cached, tilesAllocated);
+        }
+    }
+
+    public static Object beginPaint() {
+        return SINK != null ? SINK.beginPaint() : null;
+    }
+
+    public static void endPaint(Object event, int visibleTiles, int drawnTiles) {
+        if (event != null) {
+            SINK.endPaint(event, visibleTiles, drawnTiles);
+        }
+    }
+
+}
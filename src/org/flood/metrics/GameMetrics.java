@@ -0,0 +1,288 @@
+package org.flood.metrics;
+
+import org.flood.algorithms.InitializationAlgorithm;
+import org.flood.algorithms.InitializationAlgorithms;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * GameMetrics class that records where the game spends its time, so that it can be watched through JMX.
+ * <p/>
+ * The floods, the selections, the generation of boards and the frames painted are timed into LatencyHistograms and
+ * counted into atomic counters, which is lock-free and allocates nothing. Recording is off by default unless the
+ * flood.metrics system property is true, and can be turned on and off at any time through the MBean.
+ * <p/>
+ * The hot paths check isInstrumented once and skip all measuring when it is false. It folds together whether the
+ * metrics are recording, whether there is an EventSink and whether anything else, such as the performance overlay,
+ * watches the game, and it is only updated when one of these changes.
+ */
+public final class GameMetrics implements GameMetricsMBean {
+
+    /**
+     * The name under which the MBean is registered.
+     */
+    public static final String OBJECT_NAME = "org.flood:type=GameMetrics";
+
+    private static final GameMetrics INSTANCE = new GameMetrics();
+    private static final double NANOSECONDS_PER_MICROSECOND = 1e3;
+
+    private static volatile boolean recording = Boolean.getBoolean("flood.metrics");
+    // Guarded by the class, like the updates of instrumented.
+    private static int watcherCount;
+    private static volatile boolean instrumented = recording || GameEvents.hasSink();
+
+    private final LatencyHistogram floodTimes = new LatencyHistogram();
+    private final AtomicLong tilesFlooded = new AtomicLong();
+    private final AtomicLong beachesCreated = new AtomicLong();
+    private final LatencyHistogram selectionTimes = new LatencyHistogram();
+    // A histogram for each InitializationAlgorithm, by name. The known ones are created up front.
+    private final ConcurrentHashMap<String, LatencyHistogram> generationTimes =
+            new ConcurrentHashMap<String, LatencyHistogram>();
+    private final LatencyHistogram frameTimes = new LatencyHistogram();
+    private final AtomicLong tilesDrawn = new AtomicLong();
+
+    private GameMetrics() {
+        for (InitializationAlgorithm initializationAlgorithm : InitializationAlgorithms.getInitializationAlgorithms()) {
+            generationTimes.put(initializationAlgorithm.toString(), new LatencyHistogram());
+        }
+    }
+
+    /**
+     * Registers the MBean of the metrics with the platform MBeanServer, unless it is already registered.
+     *
+     * @throws JMException if the MBean could not be registered
+     */
+    public static void register() throws JMException {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = new ObjectName(OBJECT_NAME);
+        if (!server.isRegistered(name)) {
+            server.registerMBean(INSTANCE, name);
+        }
+    }
+
+    /**
+     * Returns whether or not the metrics should be recorded.
+     *
+     * @return a boolean
+     */
+    public static boolean isRecording() {
+        return recording;
+    }
+
+    /**
+     * Returns whether or not anything measures the game. Instrumented code only measures anything when this is true,
+     * and checks what to record after.
+     *
+     * @return a boolean
+     */
+    public static boolean isInstrumented() {
+        return instrumented;
+    }
+
+    /**
+     * Makes the game measured until stopWatching is called, for something other than the metrics and the events that
+     * needs the measurements, such as the performance overlay.
+     */
+    public static synchronized void startWatching() {
+        watcherCount++;
+        updateInstrumented();
+    }
+
+    /**
+     * Undoes a call to startWatching.
+     */
+    public static synchronized void stopWatching() {
+        if (watcherCount == 0) {
+            throw new IllegalStateException("stopWatching was called more times than startWatching.");
+        }
+        watcherCount--;
+        updateInstrumented();
+    }
+
+    private static synchronized void updateInstrumented() {
+        instrumented = recording || watcherCount != 0 || GameEvents.hasSink();
+    }
+
+    /**
+     * Records a flood.
+     *
+     * @param nanoseconds    how long the flood took
+     * @param tilesFlooded   how many tiles became water
+     * @param beachesCreated how many hills became beaches
+     */
+    public static void recordFlood(long nanoseconds, int tilesFlooded, int beachesCreated) {
+        INSTANCE.floodTimes.record(nanoseconds);
+        INSTANCE.tilesFlooded.addAndGet(tilesFlooded);
+        INSTANCE.beachesCreated.addAndGet(beachesCreated);
+    }
+
+    /**
+     * Records finding the tiles that a flood would hit.
+     *
+     * @param nanoseconds how long finding them took
+     */
+    public static void recordSelection(long nanoseconds) {
+        INSTANCE.selectionTimes.record(nanoseconds);
+    }
+
+    /**
+     * Records filling a board, whether it was generated or taken from a cache.
+     *
+     * @param initializationAlgorithm the InitializationAlgorithm of the board
+     * @param nanoseconds             how long filling the board took
+     */
+    public static void recordGeneration(InitializationAlgorithm initializationAlgorithm, long nanoseconds) {
+        String name = initializationAlgorithm.toString();
+        LatencyHistogram histogram = INSTANCE.generationTimes.get(name);
+        if (histogram == null) {
+            // Only for algorithms that are not registered, the first time one of them is used.
+            INSTANCE.generationTimes.putIfAbsent(name, new LatencyHistogram());
+            histogram = INSTANCE.generationTimes.get(name);
+        }
+        histogram.record(nanoseconds);
+    }
+
+    /**
+     * Records a painted frame.
+     *
+     * @param nanoseconds how long painting the frame took
+     * @param tilesDrawn  how many tiles were drawn
+     */
+    public static void recordFrame(long nanoseconds, int tilesDrawn) {
+        INSTANCE.frameTimes.record(nanoseconds);
+        INSTANCE.tilesDrawn.addAndGet(tilesDrawn);
+    }
+
+    private static double toMicros(double nanoseconds) {
+        return nanoseconds / NANOSECONDS_PER_MICROSECOND;
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return recording;
+    }
+
+    @Override
+    public void setEnabled(boolean enabled) {
+        synchronized (GameMetrics.class) {
+            recording = enabled;
+            updateInstrumented();
+        }
+    }
+
+    @Override
+    public long getFloodCount() {
+        return floodTimes.getCount();
+    }
+
+    @Override
+    public double getFloodMeanMicros() {
+        return toMicros(floodTimes.getMean());
+    }
+
+    @Override
+    public double getFloodP50Micros() {
+        return toMicros(floodTimes.getValueAtPercentile(50));
+    }
+
+    @Override
+    public double getFloodP99Micros() {
+        return toMicros(floodTimes.getValueAtPercentile(99));
+    }
+
+    @Override
+    public double getFloodMaxMicros() {
+        return toMicros(floodTimes.getMax());
+    }
+
+    @Override
+    public long getTilesFlooded() {
+        return tilesFlooded.get();
+    }
+
+    @Override
+    public long getBeachesCreated() {
+        return beachesCreated.get();
+    }
+
+    @Override
+    public long getSelectionCount() {
+        return selectionTimes.getCount();
+    }
+
+    @Override
+    public double getSelectionP50Micros() {
+        return toMicros(selectionTimes.getValueAtPercentile(50));
+    }
+
+    @Override
+    public double getSelectionP99Micros() {
+        return toMicros(selectionTimes.getValueAtPercentile(99));
+    }
+
+    @Override
+    public double getSelectionMaxMicros() {
+        return toMicros(selectionTimes.getMax());
+    }
+
+    @Override
+    public String[] getGenerationTimes() {
+        List<String> lines = new ArrayList<String>();
+        for (Map.Entry<String, LatencyHistogram> entry : generationTimes.entrySet()) {
+            LatencyHistogram histogram = entry.getValue();
+            if (histogram.getCount() != 0) {
+                lines.add(String.format("%s: %d boards, mean %.1f us, p99 %.1f us, max %.1f us", entry.getKey(),
+                        histogram.getCount(), toMicros(histogram.getMean()),
+                        toMicros(histogram.getValueAtPercentile(99)), toMicros(histogram.getMax())));
+            }
+        }
+        return lines.toArray(new String[lines.size()]);
+    }
+
+    @Override
+    public long getFrameCount() {
+        return frameTimes.getCount();
+    }
+
+    @Override
+    public double getFrameP50Micros() {
+        return toMicros(frameTimes.getValueAtPercentile(50));
+    }
+
+    @Override
+    public double getFrameP99Micros() {
+        return toMicros(frameTimes.getValueAtPercentile(99));
+    }
+
+    @Override
+    public double getFrameMaxMicros() {
+        return toMicros(frameTimes.getMax());
+    }
+
+    @Override
+    public long getTilesDrawn() {
+        return tilesDrawn.get();
+    }
+
+    @Override
+    public void reset() {
+        floodTimes.reset();
+        tilesFlooded.set(0);
+        beachesCreated.set(0);
+        selectionTimes.reset();
+        for (LatencyHistogram histogram : generationTimes.values()) {
+            histogram.reset();
+        }
+        frameTimes.reset();
+        tilesDrawn.set(0);
+    }
+
+}
@@ -0,0 +1,54 @@
+package org.flood.metrics;
+
+/**
+ * The management interface of GameMetrics. Durations are in microseconds.
+ */
+public interface GameMetricsMBean {
+
+    boolean isEnabled();
+
+    void setEnabled(boolean enabled);
+
+    long getFloodCount();
+
+    double getFloodMeanMicros();
+
+    double getFloodP50Micros();
+
+    double getFloodP99Micros();
+
+    double getFloodMaxMicros();
+
+    long getTilesFlooded();
+
+    long getBeachesCreated();
+
+    long getSelectionCount();
+
+    double getSelectionP50Micros();
+
+    double getSelectionP99Micros();
+
+    double getSelectionMaxMicros();
+
+    /**
+     * Returns a line for each InitializationAlgorithm that generated a board, with how long generating took.
+     */
+    String[] getGenerationTimes();
+
+    long getFrameCount();
+
+    double getFrameP50Micros();
+
+    double getFrameP99Micros();
+
+    double getFrameMaxMicros();
+
+    long getTilesDrawn();
+
+    /**
+     * Forgets everything recorded so far.
+     */
+    void reset();
+
+}
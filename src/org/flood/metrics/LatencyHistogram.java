@@ -0,0 +1,125 @@
+package org.flood.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * LatencyHistogram class that counts nonnegative values, such as durations in nanoseconds, into buckets of bounded
+ * relative error, in the way of an HdrHistogram.
+ * <p/>
+ * Values below 2^SUB_BUCKET_BITS have a bucket each. Above that, every power of two is split into 2^(SUB_BUCKET_BITS -
+ * 1) buckets of equal width, so any value is within about 3% of the bounds of its bucket and every long fits in less
+ * than two thousand buckets.
+ * <p/>
+ * Recording a value is lock-free and allocates nothing. Values recorded while the histogram is being read may or may
+ * not be seen by the reader.
+ */
+public final class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 6;
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+    private static final int HALF_SUB_BUCKET_COUNT = SUB_BUCKET_COUNT / 2;
+
+    private final AtomicLongArray counts = new AtomicLongArray(getBucket(Long.MAX_VALUE) + 1);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong sum = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * Returns the bucket of a nonnegative value.
+     */
+    private static int getBucket(long value) {
+        if (value < SUB_BUCKET_COUNT) {
+            return (int) value;
+        }
+        // How far the value must be shifted right to fit in the upper half of the sub-buckets.
+        int shift = Long.SIZE - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        return shift * HALF_SUB_BUCKET_COUNT + (int) (value >>> shift);
+    }
+
+    /**
+     * Returns the highest value that falls into a bucket.
+     */
+    private static long getHighestValue(int bucket) {
+        if (bucket < SUB_BUCKET_COUNT) {
+            return bucket;
+        }
+        int shift = bucket / HALF_SUB_BUCKET_COUNT - 1;
+        long subBucket = bucket % HALF_SUB_BUCKET_COUNT + HALF_SUB_BUCKET_COUNT;
+        return ((subBucket + 1) << shift) - 1;
+    }
+
+    /**
+     * Records a value. Negative values are recorded as zero.
+     *
+     * @param value a value, usually a duration in nanoseconds
+     */
+    public void record(long value) {
+        value = Math.max(0, value);
+        counts.incrementAndGet(getBucket(value));
+        count.incrementAndGet();
+        sum.addAndGet(value);
+        long currentMax = max.get();
+        while (value > currentMax && !max.compareAndSet(currentMax, value)) {
+            currentMax = max.get();
+        }
+    }
+
+    /**
+     * Returns how many values were recorded.
+     */
+    public long getCount() {
+        return count.get();
+    }
+
+    /**
+     * Returns the mean of the recorded values, zero if there are none.
+     */
+    public double getMean() {
+        long currentCount = count.get();
+        return currentCount == 0 ? 0 : (double) sum.get() / currentCount;
+    }
+
+    /**
+     * Returns the highest recorded value, zero if there are none.
+     */
+    public long getMax() {
+        return max.get();
+    }
+
+    /**
+     * Returns a value that at least the specified percentage of the recorded values are not above, within the
+     * precision of the buckets. Never more than the highest recorded value.
+     *
+     * @param percentile a percentage, from 0 up to 100
+     * @return a value, zero if there are none
+     */
+    public long getValueAtPercentile(double percentile) {
+        long total = 0;
+        for (int bucket = 0; bucket < counts.length(); bucket++) {
+            total += counts.get(bucket);
+        }
+        long target = Math.max(1, (long) Math.ceil(total * percentile / 100));
+        long seen = 0;
+        for (int bucket = 0; bucket < counts.length(); bucket++) {
+            seen += counts.get(bucket);
+            if (seen >= target) {
+                return Math.min(getHighestValue(bucket), max.get());
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Forgets every recorded value.
+     */
+    public void reset() {
+        for (int bucket = 0; bucket < counts.length(); bucket++) {
+            counts.set(bucket, 0);
+        }
+        count.set(0);
+        sum.set(0);
+        max.set(0);
+    }
+
+}
@@ -0,0 +1,50 @@
+package org.flood.solver;
+
+import java.util.Arrays;
+
+/**
+ * Island class that represents a maximal group of land (not water) tiles connected through their eight neighbors.
+ * <p/>
+ * Floods in one island never change another island, so islands can be solved independently. An island is identified
+ * only by its tiles: every tile next to it is water, so its tiles tell which of them are beaches.
+ */
+final class Island {
+
+    // One bit per tile of the board, set for the tiles of this island.
+    final long[] bits;
+    // The indices of the tiles of this island, in increasing order.
+    final int[] tiles;
+    private final int hash;
+
+    Island(long[] bits, int[] tiles) {
+        this.bits = bits;
+        this.tiles = tiles;
+        this.hash = Arrays.hashCode(bits);
+    }
+
+    boolean contains(int index) {
+        return (bits[index >>> 6] & (1L << index)) != 0;
+    }
+
+    int size() {
+        return tiles.length;
+    }
+
+    @Override
+    public boolean equals(Object object) {
+        if (this == object) {
+            return true;
+        }
+        if (!(object instanceof Island)) {
+            return false;
+        }
+        Island island = (Island) object;
+        return hash == island.hash && Arrays.equals(bits, island.bits);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+}
@@ -0,0 +1,69 @@
+package org.flood.solver;
+
+/**
+ * Solution class that stores a shortest sequence of clicks that floods a board and how much work it took to find it.
+ */
+public class Solution {
+
+    private final int width;
+    private final int[] moves;
+    private final long nodes;
+    private final long nanoseconds;
+
+    Solution(int width, int[] moves, long nodes, long nanoseconds) {
+        this.width = width;
+        this.moves = moves;
+        this.nodes = nodes;
+        this.nanoseconds = nanoseconds;
+    }
+
+    /**
+     * Returns the minimum number of clicks needed to flood the board.
+     *
+     * @return a nonnegative int
+     */
+    public int getClickCount() {
+        return moves.length;
+    }
+
+    /**
+     * Returns the indices ({@code j * width + i}) of the tiles that should be clicked, in order.
+     *
+     * @return a new array of indices
+     */
+    public int[] getMoves() {
+        return moves.clone();
+    }
+
+    public int getMoveI(int move) {
+        return moves[move] % width;
+    }
+
+    public int getMoveJ(int move) {
+        return moves[move] / width;
+    }
+
+    /**
+     * Returns how many states were visited by the search.
+     *
+     * @return a nonnegative long
+     */
+    public long getNodes() {
+        return nodes;
+    }
+
+    public long getNanoseconds() {
+        return nanoseconds;
+    }
+
+    public double getNodesPerSecond() {
+        return nanoseconds == 0 ? 0.0 : nodes * 1e9 / nanoseconds;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d clicks, %d nodes in %.3f s (%.0f nodes/s)", getClickCount(), nodes,
+                nanoseconds / 1e9, getNodesPerSecond());
+    }
+
+}
@@ -0,0 +1,507 @@
+package org.flood.solver;
+
+import org.flood.FloodEngine;
+import org.flood.TileType;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Solver class that finds the minimum number of clicks needed to flood a board.
+ * <p/>
+ * The land of the board is contracted into islands, which are solved independently. Each island is solved with IDA*:
+ * its states are the sets of land tiles left, encoded as bitsets, and no tile can become water sooner than the number
+ * of clicks that separate it from the water, which is an admissible heuristic. Proven bounds and exact solutions are
+ * shared in transposition tables, and the first moves of each island are searched in parallel.
+ */
+public class Solver {
+
+    private static final Comparator<int[]> BIGGEST_FIRST = new Comparator<int[]>() {
+        @Override
+        public int compare(int[] a, int[] b) {
+            return b.length - a.length;
+        }
+    };
+
+    // How many Solutions are kept for the boards solved most recently.
+    private static final int CACHED_SOLUTIONS = 64;
+    // Keyed by the Zobrist hashes of the boards, so that boards are not compared tile by tile.
+    private static final Map<Long, Solution> CACHE = Collections.synchronizedMap(
+            new LinkedHashMap<Long, Solution>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Long, Solution> eldest) {
+                    return size() > CACHED_SOLUTIONS;
+                }
+            });
+
+    private final int width;
+    private final int height;
+    private final int parallelism;
+    private final List<Island> islands;
+    // The exact number of clicks needed by each island solved so far.
+    private final ConcurrentHashMap<Island, Integer> solutions = new ConcurrentHashMap<Island, Integer>();
+    // The biggest number of clicks each island was proven to need.
+    private final ConcurrentHashMap<Island, Integer> lowerBounds = new ConcurrentHashMap<Island, Integer>();
+    private final AtomicLong nodes = new AtomicLong();
+
+    /**
+     * Creates a Solver for the current board of a FloodEngine that uses as many threads as there are processors.
+     *
+     * @param engine the FloodEngine, its board is copied
+     */
+    public Solver(FloodEngine engine) {
+        this(engine, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Creates a Solver for the current board of a FloodEngine.
+     *
+     * @param engine      the FloodEngine, its board is copied
+     * @param parallelism how many threads may be used
+     */
+    public Solver(FloodEngine engine, int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("parallelism must be positive.");
+        }
+        if (engine.getWaterCount() == 0) {
+            throw new IllegalArgumentException("a board without water cannot be flooded.");
+        }
+        this.width = engine.getWidth();
+        this.height = engine.getHeight();
+        this.parallelism = parallelism;
+        long[] land = new long[(width * height + 63) / 64];
+        for (int j = 0; j < height; j++) {
+            for (int i = 0; i < width; i++) {
+                if (engine.getTileType(i, j) != TileType.WATER) {
+                    int index = j * width + i;
+                    land[index >>> 6] |= 1L << index;
+                }
+            }
+        }
+        this.islands = split(land, new Workspace());
+    }
+
+    /**
+     * Finds a shortest sequence of clicks that floods the current board of a FloodEngine. If an equal board was solved
+     * recently, its Solution is returned instead of solving the board again.
+     *
+     * @param engine the FloodEngine
+     * @return a Solution
+     */
+    public static Solution solve(FloodEngine engine) {
+        Long hash = engine.getBoardHash();
+        Solution solution = CACHE.get(hash);
+        if (solution == null) {
+            solution = new Solver(engine).solve();
+            CACHE.put(hash, solution);
+        }
+        return solution;
+    }
+
+    /**
+     * Finds a shortest sequence of clicks that floods the whole board.
+     *
+     * @return a Solution
+     */
+    public Solution solve() {
+        long start = System.nanoTime();
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            for (Island island : islands) {
+                solveInParallel(island, pool);
+            }
+        } finally {
+            pool.shutdown();
+        }
+        Workspace workspace = new Workspace();
+        List<Integer> moves = new ArrayList<Integer>();
+        for (Island island : islands) {
+            addMoves(island, moves, workspace);
+        }
+        nodes.addAndGet(workspace.nodes);
+        int[] moveArray = new int[moves.size()];
+        for (int k = 0; k < moveArray.length; k++) {
+            moveArray[k] = moves.get(k);
+        }
+        return new Solution(width, moveArray, nodes.get(), System.nanoTime() - start);
+    }
+
+    /**
+     * Solves an island, searching each first move in its own task.
+     */
+    private void solveInParallel(Island island, ForkJoinPool pool) {
+        Workspace workspace = new Workspace();
+        int[][] components = analyze(island, workspace);
+        for (int bound = lowerBound(island, workspace); ; bound++) {
+            AtomicBoolean found = new AtomicBoolean();
+            List<FirstMove> firstMoves = new ArrayList<FirstMove>(components.length);
+            for (int[] component : components) {
+                firstMoves.add(new FirstMove(island, component, bound - 1, found));
+            }
+            pool.invoke(new FirstMoves(firstMoves));
+            if (found.get()) {
+                solutions.put(island, bound);
+                break;
+            }
+            raiseLowerBound(island, bound + 1);
+        }
+        nodes.addAndGet(workspace.nodes);
+    }
+
+    /**
+     * Adds to a list the moves of a shortest sequence of clicks that floods an island.
+     */
+    private void addMoves(Island island, List<Integer> moves, Workspace workspace) {
+        int clicks = solve(island, Integer.MAX_VALUE, workspace);
+        for (int[] component : analyze(island, workspace)) {
+            List<Island> parts = remove(island, component, workspace);
+            if (canClear(parts, clicks - 1, workspace)) {
+                moves.add(component[0]);
+                for (Island part : parts) {
+                    addMoves(part, moves, workspace);
+                }
+                return;
+            }
+        }
+        throw new AssertionError("No move leads to the solution of the island.");
+    }
+
+    /**
+     * Returns the minimum number of clicks needed to flood an island if it is not bigger than a maximum.
+     *
+     * @return the number of clicks or -1 if the island needs more than the maximum or the search was stopped
+     */
+    private int solve(Island island, int maximum, Workspace workspace) {
+        Integer solution = solutions.get(island);
+        if (solution != null) {
+            return solution <= maximum ? solution : -1;
+        }
+        for (int bound = lowerBound(island, workspace); bound <= maximum; bound++) {
+            if (canClear(island, bound, workspace)) {
+                // The previous bound is only known to be insufficient if the search was not stopped.
+                if (!workspace.stop.get()) {
+                    solutions.put(island, bound);
+                }
+                return bound;
+            }
+            if (workspace.stop.get()) {
+                return -1;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Evaluates whether or not some islands can all be flooded with at most budget clicks.
+     */
+    private boolean canClear(List<Island> parts, int budget, Workspace workspace) {
+        if (parts.size() == 1) {
+            return canClear(parts.get(0), budget, workspace);
+        }
+        int[] bounds = new int[parts.size()];
+        int boundSum = 0;
+        for (int k = 0; k < bounds.length; k++) {
+            bounds[k] = lowerBound(parts.get(k), workspace);
+            boundSum += bounds[k];
+        }
+        if (boundSum > budget) {
+            return false;
+        }
+        // The islands are independent, so each one is solved exactly with what the others leave of the budget.
+        int remaining = budget;
+        for (int k = 0; k < bounds.length; k++) {
+            boundSum -= bounds[k];
+            int clicks = solve(parts.get(k), remaining - boundSum, workspace);
+            if (clicks == -1) {
+                return false;
+            }
+            remaining -= clicks;
+        }
+        return true;
+    }
+
+    /**
+     * The depth-first search of IDA*. Evaluates whether or not an island can be flooded with at most budget clicks.
+     */
+    private boolean canClear(Island island, int budget, Workspace workspace) {
+        workspace.nodes++;
+        if (workspace.stop.get()) {
+            return false;
+        }
+        Integer solution = solutions.get(island);
+        if (solution != null) {
+            return solution <= budget;
+        }
+        Integer lowerBound = lowerBounds.get(island);
+        if (lowerBound != null && lowerBound > budget) {
+            return false;
+        }
+        int[][] components = analyze(island, workspace);
+        if (workspace.maximumDistance > budget) {
+            raiseLowerBound(island, workspace.maximumDistance);
+            return false;
+        }
+        for (int[] component : components) {
+            if (canClear(remove(island, component, workspace), budget - 1, workspace)) {
+                return true;
+            }
+        }
+        // A stopped search proves nothing.
+        if (!workspace.stop.get()) {
+            raiseLowerBound(island, budget + 1);
+        }
+        return false;
+    }
+
+    /**
+     * Returns the best known lower bound for the number of clicks an island needs.
+     */
+    private int lowerBound(Island island, Workspace workspace) {
+        Integer solution = solutions.get(island);
+        if (solution != null) {
+            return solution;
+        }
+        analyze(island, workspace);
+        int bound = workspace.maximumDistance;
+        Integer lowerBound = lowerBounds.get(island);
+        if (lowerBound != null) {
+            bound = Math.max(bound, lowerBound);
+        }
+        return bound;
+    }
+
+    private void raiseLowerBound(Island island, int bound) {
+        Integer old = lowerBounds.putIfAbsent(island, bound);
+        while (old != null && old < bound && !lowerBounds.replace(island, old, bound)) {
+            old = lowerBounds.get(island);
+        }
+    }
+
+    /**
+     * Finds the beaches of an island and how far from the water its farthest tile is.
+     * <p/>
+     * A tile that is d steps (through its eight neighbors) away from the water needs at least d clicks to be flooded,
+     * as every click floods tiles that are next to the water. The biggest such distance is stored in the workspace.
+     *
+     * @return the groups of beach tiles that are flooded together by a click, biggest first
+     */
+    private int[][] analyze(Island island, Workspace workspace) {
+        int generation = workspace.nextGeneration();
+        int[] queue = workspace.queue;
+        int tail = 0;
+        for (int tile : island.tiles) {
+            if (isBeach(island, tile)) {
+                workspace.seen[tile] = generation;
+                workspace.distance[tile] = 1;
+                queue[tail++] = tile;
+            }
+        }
+        int beachCount = tail;
+        int maximumDistance = 0;
+        for (int head = 0; head < tail; head++) {
+            int tile = queue[head];
+            int distance = workspace.distance[tile];
+            maximumDistance = distance;
+            int i = tile % width;
+            int j = tile / width;
+            for (int y = Math.max(j - 1, 0); y <= Math.min(j + 1, height - 1); y++) {
+                for (int x = Math.max(i - 1, 0); x <= Math.min(i + 1, width - 1); x++) {
+                    int neighbor = y * width + x;
+                    if (island.contains(neighbor) && workspace.seen[neighbor] != generation) {
+                        workspace.seen[neighbor] = generation;
+                        workspace.distance[neighbor] = distance + 1;
+                        queue[tail++] = neighbor;
+                    }
+                }
+            }
+        }
+        workspace.maximumDistance = maximumDistance;
+        // The beaches are the first tiles of the queue. Group them through their four neighbors.
+        int[] beaches = Arrays.copyOf(queue, beachCount);
+        int componentGeneration = workspace.nextGeneration();
+        List<int[]> components = new ArrayList<int[]>();
+        for (int beach : beaches) {
+            if (workspace.seen[beach] != componentGeneration) {
+                workspace.seen[beach] = componentGeneration;
+                tail = 0;
+                queue[tail++] = beach;
+                for (int head = 0; head < tail; head++) {
+                    int tile = queue[head];
+                    int i = tile % width;
+                    int j = tile / width;
+                    if (j != 0) {
+                        tail = visitBeach(island, tile - width, componentGeneration, workspace, tail);
+                    }
+                    if (j != height - 1) {
+                        tail = visitBeach(island, tile + width, componentGeneration, workspace, tail);
+                    }
+                    if (i != 0) {
+                        tail = visitBeach(island, tile - 1, componentGeneration, workspace, tail);
+                    }
+                    if (i != width - 1) {
+                        tail = visitBeach(island, tile + 1, componentGeneration, workspace, tail);
+                    }
+                }
+                components.add(Arrays.copyOf(queue, tail));
+            }
+        }
+        Collections.sort(components, BIGGEST_FIRST);
+        return components.toArray(new int[components.size()][]);
+    }
+
+    private int visitBeach(Island island, int tile, int generation, Workspace workspace, int tail) {
+        if (island.contains(tile) && workspace.seen[tile] != generation && isBeach(island, tile)) {
+            workspace.seen[tile] = generation;
+            workspace.queue[tail++] = tile;
+        }
+        return tail;
+    }
+
+    /**
+     * Evaluates whether or not a tile of an island is a beach. As all the tiles around an island are water, a tile is a
+     * beach if one of its neighbors is not part of the island.
+     */
+    private boolean isBeach(Island island, int tile) {
+        int i = tile % width;
+        int j = tile / width;
+        for (int y = Math.max(j - 1, 0); y <= Math.min(j + 1, height - 1); y++) {
+            for (int x = Math.max(i - 1, 0); x <= Math.min(i + 1, width - 1); x++) {
+                if (!island.contains(y * width + x)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Floods a group of beaches of an island and returns the islands that are left.
+     */
+    private List<Island> remove(Island island, int[] component, Workspace workspace) {
+        long[] land = island.bits.clone();
+        for (int tile : component) {
+            land[tile >>> 6] &= ~(1L << tile);
+        }
+        return split(land, workspace);
+    }
+
+    /**
+     * Splits a set of land tiles into islands.
+     */
+    private List<Island> split(long[] land, Workspace workspace) {
+        List<Island> parts = new ArrayList<Island>(1);
+        int generation = workspace.nextGeneration();
+        int[] queue = workspace.queue;
+        for (int w = 0; w < land.length; w++) {
+            for (long word = land[w]; word != 0; word &= word - 1) {
+                int start = 64 * w + Long.numberOfTrailingZeros(word);
+                if (workspace.seen[start] == generation) {
+                    continue;
+                }
+                workspace.seen[start] = generation;
+                int tail = 0;
+                queue[tail++] = start;
+                for (int head = 0; head < tail; head++) {
+                    int tile = queue[head];
+                    int i = tile % width;
+                    int j = tile / width;
+                    for (int y = Math.max(j - 1, 0); y <= Math.min(j + 1, height - 1); y++) {
+                        for (int x = Math.max(i - 1, 0); x <= Math.min(i + 1, width - 1); x++) {
+                            int neighbor = y * width + x;
+                            boolean isLand = (land[neighbor >>> 6] & (1L << neighbor)) != 0;
+                            if (isLand && workspace.seen[neighbor] != generation) {
+                                workspace.seen[neighbor] = generation;
+                                queue[tail++] = neighbor;
+                            }
+                        }
+                    }
+                }
+                int[] tiles = Arrays.copyOf(queue, tail);
+                Arrays.sort(tiles);
+                long[] bits = new long[land.length];
+                for (int tile : tiles) {
+                    bits[tile >>> 6] |= 1L << tile;
+                }
+                parts.add(new Island(bits, tiles));
+            }
+        }
+        return parts;
+    }
+
+    /**
+     * The scratch arrays used by a single thread.
+     */
+    private class Workspace {
+
+        final int[] seen = new int[width * height];
+        final int[] distance = new int[width * height];
+        final int[] queue = new int[width * height];
+        AtomicBoolean stop = new AtomicBoolean();
+        int generation;
+        int maximumDistance;
+        long nodes;
+
+        int nextGeneration() {
+            return ++generation;
+        }
+
+    }
+
+    /**
+     * Searches a first move of an island, stopping as soon as some first move is found to lead to a solution.
+     */
+    @SuppressWarnings("serial")
+    private class FirstMove extends RecursiveAction {
+
+        private final Island island;
+        private final int[] component;
+        private final int budget;
+        private final AtomicBoolean found;
+
+        FirstMove(Island island, int[] component, int budget, AtomicBoolean found) {
+            this.island = island;
+            this.component = component;
+            this.budget = budget;
+            this.found = found;
+        }
+
+        @Override
+        protected void compute() {
+            Workspace workspace = new Workspace();
+            workspace.stop = found;
+            List<Island> parts = remove(island, component, workspace);
+            if (parts.isEmpty() || canClear(parts, budget, workspace)) {
+                found.set(true);
+            }
+            nodes.addAndGet(workspace.nodes);
+        }
+
+    }
+
+    @SuppressWarnings("serial")
+    private static class FirstMoves extends RecursiveAction {
+
+        private final List<FirstMove> firstMoves;
+
+        FirstMoves(List<FirstMove> firstMoves) {
+            this.firstMoves = firstMoves;
+        }
+
+        @Override
+        protected void compute() {
+            invokeAll(firstMoves);
+        }
+
+    }
+
+}
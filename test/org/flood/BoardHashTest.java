@@ -0,0 +1,81 @@
+package org.flood;
+
+import org.flood.algorithms.InitializationAlgorithm;
+import org.flood.algorithms.InitializationAlgorithms;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+/**
+ * Tests that the hash TileMatrix keeps up to date is the hash computed again from all of its tiles.
+ */
+public class BoardHashTest {
+
+    @Test
+    public void hashAfterFloodsUndosAndRedosIsTheRecomputedHash() {
+        Random random = new Random(2);
+        for (InitializationAlgorithm initializationAlgorithm : InitializationAlgorithms.getInitializationAlgorithms()) {
+            for (int board = 0; board < 5; board++) {
+                int width = 3 + random.nextInt(40);
+                int height = 3 + random.nextInt(40);
+                TileMatrix tileMatrix = new TileMatrix(width, height);
+                tileMatrix.initialize(initializationAlgorithm, random.nextLong());
+                // The hashes before every flood, which undoing the floods must give back.
+                ArrayList<Long> hashes = new ArrayList<Long>();
+                for (int click = 0; click < 60; click++) {
+                    hashes.add(tileMatrix.getHash());
+                    tileMatrix.startFlood(random.nextInt(width), random.nextInt(height));
+                    assertEquals(recomputeHash(tileMatrix), tileMatrix.getHash());
+                }
+                long lastHash = tileMatrix.getHash();
+                for (int click = hashes.size() - 1; click >= 0; click--) {
+                    tileMatrix.undo();
+                    assertEquals(hashes.get(click).longValue(), tileMatrix.getHash());
+                    assertEquals(recomputeHash(tileMatrix), tileMatrix.getHash());
+                }
+                while (tileMatrix.canRedo()) {
+                    tileMatrix.redo();
+                    assertEquals(recomputeHash(tileMatrix), tileMatrix.getHash());
+                }
+                assertEquals(lastHash, tileMatrix.getHash());
+            }
+        }
+    }
+
+    @Test
+    public void hashAfterSettingTilesIsTheRecomputedHash() {
+        TileMatrix tileMatrix = new TileMatrix(30, 20);
+        tileMatrix.initialize(InitializationAlgorithms.getDefaultAlgorithm(), 8);
+        tileMatrix.getHash();
+        tileMatrix.placeTile(1, 1, TileType.HILL);
+        assertEquals(recomputeHash(tileMatrix), tileMatrix.getHash());
+        tileMatrix.setTile(2, 2, new Tile(TileType.WATER));
+        assertEquals(recomputeHash(tileMatrix), tileMatrix.getHash());
+    }
+
+    @Test
+    public void boardsOfTheSameCodeHaveTheSameHash() {
+        BoardCode boardCode = new BoardCode(21, InitializationAlgorithms.getDefaultAlgorithm(), 50, 40);
+        assertEquals(new FloodEngine(boardCode).getBoardHash(), new FloodEngine(boardCode).getBoardHash());
+        BoardCode otherCode = new BoardCode(22, InitializationAlgorithms.getDefaultAlgorithm(), 50, 40);
+        assertNotEquals(new FloodEngine(boardCode).getBoardHash(), new FloodEngine(otherCode).getBoardHash());
+    }
+
+    /**
+     * Returns the hash of a new TileMatrix with the same tiles, which is computed from all of them.
+     */
+    private static long recomputeHash(TileMatrix tileMatrix) {
+        TileMatrix copy = new TileMatrix(tileMatrix.getDimensions().width, tileMatrix.getDimensions().height);
+        byte[] types = tileMatrix.getTypeArray();
+        byte[] populations = tileMatrix.getPopulationArray();
+        System.arraycopy(types, 0, copy.getTypeArray(), 0, types.length);
+        System.arraycopy(populations, 0, copy.getPopulationArray(), 0, populations.length);
+        copy.restore(tileMatrix.getHumanSalt());
+        return copy.getHash();
+    }
+
+}
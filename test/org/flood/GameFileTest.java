@@ -0,0 +1,88 @@
+package org.flood;
+
+import org.flood.algorithms.InitializationAlgorithm;
+import org.flood.algorithms.InitializationAlgorithms;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests that games are read back from a GameFile as they were written.
+ */
+public class GameFileTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void savedGamesAreReadBackEqual() throws IOException {
+        Random random = new Random(3);
+        File file = folder.newFile("game.flood");
+        for (InitializationAlgorithm initializationAlgorithm : InitializationAlgorithms.getInitializationAlgorithms()) {
+            // Odd sizes, so that the last bits of the packed tiles are used.
+            int width = 1 + random.nextInt(120);
+            int height = 1 + random.nextInt(120);
+            FloodEngine engine = new FloodEngine(width, height, initializationAlgorithm, random.nextLong());
+            for (int click = 0; click < 40; click++) {
+                engine.startFlood(random.nextInt(width), random.nextInt(height));
+            }
+            engine.save(file);
+            FloodEngine loaded = FloodEngine.load(file);
+            assertSameGame(engine, loaded);
+            // The loaded game must also play on as the saved one would have.
+            for (int click = 0; click < 40; click++) {
+                int i = random.nextInt(width);
+                int j = random.nextInt(height);
+                assertEquals(engine.getSelectionSize(i, j), loaded.getSelectionSize(i, j));
+                engine.startFlood(i, j);
+                loaded.startFlood(i, j);
+            }
+            assertSameGame(engine, loaded);
+        }
+    }
+
+    @Test
+    public void corruptedGamesAreRejected() throws IOException {
+        File file = folder.newFile("game.flood");
+        new FloodEngine(50, 40, InitializationAlgorithms.getDefaultAlgorithm(), 7).save(file);
+        RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+        try {
+            randomAccessFile.seek(file.length() - 3);
+            int flipped = randomAccessFile.read() ^ 1;
+            randomAccessFile.seek(file.length() - 3);
+            randomAccessFile.write(flipped);
+        } finally {
+            randomAccessFile.close();
+        }
+        try {
+            FloodEngine.load(file);
+            fail("A corrupted game was loaded.");
+        } catch (IOException expected) {
+            // The checksum does not match.
+        }
+    }
+
+    private static void assertSameGame(FloodEngine expected, FloodEngine actual) {
+        assertEquals(expected.getBoardCode(), actual.getBoardCode());
+        assertEquals(expected.getMoveCount(), actual.getMoveCount());
+        assertEquals(expected.getWaterCount(), actual.getWaterCount());
+        assertEquals(expected.getTotalPopulation(), actual.getTotalPopulation());
+        assertEquals(expected.getBoardHash(), actual.getBoardHash());
+        for (int j = 0; j < expected.getHeight(); j++) {
+            for (int i = 0; i < expected.getWidth(); i++) {
+                assertEquals(expected.getTileType(i, j), actual.getTileType(i, j));
+                assertEquals(expected.getPopulation(i, j), actual.getPopulation(i, j));
+                assertEquals(expected.getHumanLayout(i, j), actual.getHumanLayout(i, j));
+            }
+        }
+    }
+
+}
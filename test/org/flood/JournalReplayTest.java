@@ -0,0 +1,95 @@
+package org.flood;
+
+import org.flood.algorithms.InitializationAlgorithms;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests that the games recorded into a MoveJournal are replayed as they were played.
+ */
+public class JournalReplayTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void recordedGamesReplayConsistently() throws IOException {
+        File file = folder.newFile("games.journal");
+        MoveJournal journal = new MoveJournal(file);
+        FloodEngine engine = new FloodEngine(60, 45, InitializationAlgorithms.getDefaultAlgorithm(), 5);
+        engine.setJournal(journal);
+        Random random = new Random(9);
+        for (int click = 0; click < 2000; click++) {
+            engine.startFlood(random.nextInt(60), random.nextInt(45));
+            if (click == 1200) {
+                engine.reinitialize(77);
+            }
+        }
+        engine.setJournal(null);
+        journal.close();
+        JournalReplay replay = JournalReplay.replay(file);
+        assertTrue(replay.getFirstMismatch(), replay.isConsistent());
+        assertEquals(2, replay.getGameCount());
+        assertEquals(2000, replay.getMoveCount());
+    }
+
+    @Test
+    public void undoneAndRedoneFloodsReplayConsistently() throws IOException {
+        File file = folder.newFile("games.journal");
+        MoveJournal journal = new MoveJournal(file);
+        FloodEngine engine = new FloodEngine(60, 45, InitializationAlgorithms.getDefaultAlgorithm(), 11);
+        engine.setJournal(journal);
+        Random random = new Random(4);
+        for (int move = 0; move < 2000; move++) {
+            int kind = random.nextInt(10);
+            if (kind < 3 && engine.canUndo()) {
+                engine.undo();
+            } else if (kind < 5 && engine.canRedo()) {
+                engine.redo();
+            } else {
+                engine.startFlood(random.nextInt(60), random.nextInt(45));
+            }
+        }
+        engine.setJournal(null);
+        journal.close();
+        JournalReplay replay = JournalReplay.replay(file);
+        assertTrue(replay.getFirstMismatch(), replay.isConsistent());
+        assertEquals(1, replay.getGameCount());
+    }
+
+    @Test
+    public void tamperedCheckpointsAreMismatches() throws IOException {
+        File file = folder.newFile("games.journal");
+        MoveJournal journal = new MoveJournal(file);
+        FloodEngine engine = new FloodEngine(60, 45, InitializationAlgorithms.getDefaultAlgorithm(), 5);
+        engine.setJournal(journal);
+        Random random = new Random(9);
+        for (int click = 0; click < 500; click++) {
+            engine.startFlood(random.nextInt(60), random.nextInt(45));
+        }
+        engine.setJournal(null);
+        journal.close();
+        // The journal ends with the population of the last checkpoint.
+        RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+        try {
+            randomAccessFile.seek(file.length() - 1);
+            int flipped = randomAccessFile.read() ^ 1;
+            randomAccessFile.seek(file.length() - 1);
+            randomAccessFile.write(flipped);
+        } finally {
+            randomAccessFile.close();
+        }
+        assertFalse(JournalReplay.replay(file).isConsistent());
+    }
+
+}
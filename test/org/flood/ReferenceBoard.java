@@ -0,0 +1,164 @@
+package org.flood;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+/**
+ * ReferenceBoard that plays a copy of a board by the rules of the game in the most direct way, to check TileMatrix
+ * against it.
+ * <p/>
+ * It keeps nothing but the type and the population of every tile. Selections are found by walking the beaches from the
+ * clicked tile, and after a flood every hill is checked for water around it, as the game did before it kept labeled
+ * regions and histories of floods.
+ */
+final class ReferenceBoard {
+
+    private final int width;
+    private final int height;
+    private final TileType[] types;
+    private final int[] populations;
+
+    private ReferenceBoard(int width, int height, TileType[] types, int[] populations) {
+        this.width = width;
+        this.height = height;
+        this.types = types;
+        this.populations = populations;
+    }
+
+    /**
+     * Creates a ReferenceBoard with the tiles of a TileMatrix.
+     *
+     * @param tileMatrix the TileMatrix
+     */
+    ReferenceBoard(TileMatrix tileMatrix) {
+        this(tileMatrix.getDimensions().width, tileMatrix.getDimensions().height);
+        for (int j = 0; j < height; j++) {
+            for (int i = 0; i < width; i++) {
+                types[j * width + i] = tileMatrix.getTileType(i, j);
+                populations[j * width + i] = tileMatrix.getPopulation(i, j);
+            }
+        }
+    }
+
+    private ReferenceBoard(int width, int height) {
+        this(width, height, new TileType[width * height], new int[width * height]);
+    }
+
+    ReferenceBoard copy() {
+        return new ReferenceBoard(width, height, types.clone(), populations.clone());
+    }
+
+    /**
+     * Returns the indices of the tiles that a click on (i, j) would flood, in increasing order.
+     *
+     * @param i the i coordinate
+     * @param j the j coordinate
+     * @return an array of indices, empty if the tile at (i, j) is not a beach
+     */
+    int[] getSelection(int i, int j) {
+        int start = j * width + i;
+        if (types[start] != TileType.BEACH) {
+            return new int[0];
+        }
+        boolean[] selected = new boolean[types.length];
+        selected[start] = true;
+        int selectionSize = 1;
+        ArrayDeque<Integer> pending = new ArrayDeque<Integer>();
+        pending.add(start);
+        while (!pending.isEmpty()) {
+            int index = pending.poll();
+            int x = index % width;
+            int y = index / width;
+            int[] neighbors = {x > 0 ? index - 1 : -1, x < width - 1 ? index + 1 : -1, y > 0 ? index - width : -1,
+                    y < height - 1 ? index + width : -1};
+            for (int neighbor : neighbors) {
+                if (neighbor != -1 && types[neighbor] == TileType.BEACH && !selected[neighbor]) {
+                    selected[neighbor] = true;
+                    selectionSize++;
+                    pending.add(neighbor);
+                }
+            }
+        }
+        int[] selection = new int[selectionSize];
+        int member = 0;
+        for (int index = 0; index < types.length; index++) {
+            if (selected[index]) {
+                selection[member++] = index;
+            }
+        }
+        return selection;
+    }
+
+    /**
+     * Floods the selection of (i, j), whose humans drown, and turns every hill with water around it into a beach.
+     *
+     * @param i the i coordinate
+     * @param j the j coordinate
+     */
+    void flood(int i, int j) {
+        for (int index : getSelection(i, j)) {
+            types[index] = TileType.WATER;
+            populations[index] = 0;
+        }
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                if (types[y * width + x] == TileType.HILL && touchesWater(x, y)) {
+                    types[y * width + x] = TileType.BEACH;
+                }
+            }
+        }
+    }
+
+    private boolean touchesWater(int x, int y) {
+        for (int b = Math.max(0, y - 1); b <= Math.min(height - 1, y + 1); b++) {
+            for (int a = Math.max(0, x - 1); a <= Math.min(width - 1, x + 1); a++) {
+                if (types[b * width + a] == TileType.WATER) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Asserts that a TileMatrix has the tiles of this ReferenceBoard, that its counters agree with them, and that it
+     * gives the same selections.
+     *
+     * @param tileMatrix the TileMatrix
+     */
+    void assertMatches(TileMatrix tileMatrix) {
+        int waterCount = 0;
+        int totalPopulation = 0;
+        for (int j = 0; j < height; j++) {
+            for (int i = 0; i < width; i++) {
+                int index = j * width + i;
+                assertEquals("type of (" + i + ", " + j + ")", types[index], tileMatrix.getTileType(i, j));
+                assertEquals("population of (" + i + ", " + j + ")", populations[index], tileMatrix.getPopulation(i, j));
+                waterCount += types[index] == TileType.WATER ? 1 : 0;
+                totalPopulation += populations[index];
+            }
+        }
+        assertEquals(waterCount, tileMatrix.getWaterCount());
+        assertEquals(totalPopulation, tileMatrix.getTotalPopulation());
+        // Every tile of a region shares the members of the region, so they are only compared for its first tile.
+        boolean[] checked = new boolean[types.length];
+        for (int index = 0; index < types.length; index++) {
+            if (!checked[index]) {
+                int[] expected = getSelection(index % width, index / width);
+                int[] members = tileMatrix.getSelectionIndices(index % width, index / width);
+                int[] selection = members.clone();
+                Arrays.sort(selection);
+                assertArrayEquals("selection of tile " + index, expected, selection);
+                for (int member : expected) {
+                    checked[member] = true;
+                    assertSame(members, tileMatrix.getSelectionIndices(member % width, member / width));
+                }
+            }
+        }
+    }
+
+}
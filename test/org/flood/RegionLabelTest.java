@@ -0,0 +1,140 @@
+package org.flood;
+
+import org.flood.algorithms.InitializationAlgorithm;
+import org.flood.algorithms.InitializationAlgorithms;
+import org.junit.Test;
+
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the beach regions that TileMatrix keeps labeled as the board is flooded.
+ */
+public class RegionLabelTest {
+
+    @Test
+    public void selectionsMatchTheReference() {
+        Random random = new Random(5);
+        for (InitializationAlgorithm initializationAlgorithm : InitializationAlgorithms.getInitializationAlgorithms()) {
+            for (int board = 0; board < 4; board++) {
+                int width = 5 + random.nextInt(36);
+                int height = 5 + random.nextInt(36);
+                TileMatrix tileMatrix = new TileMatrix(width, height);
+                tileMatrix.initialize(initializationAlgorithm, random.nextLong());
+                ReferenceBoard reference = new ReferenceBoard(tileMatrix);
+                reference.assertMatches(tileMatrix);
+                for (int click = 0; click < 60; click++) {
+                    int i = random.nextInt(width);
+                    int j = random.nextInt(height);
+                    assertEquals(reference.getSelection(i, j).length, tileMatrix.getSelectionIndices(i, j).length);
+                    tileMatrix.startFlood(i, j);
+                    reference.flood(i, j);
+                    reference.assertMatches(tileMatrix);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void labelsOfFloodedRegionsAreReused() {
+        TileMatrix tileMatrix = new TileMatrix(120, 90);
+        tileMatrix.initialize(InitializationAlgorithms.getDefaultAlgorithm(), 3);
+        RegionFollower follower = new RegionFollower();
+        tileMatrix.setRegionListener(follower);
+        int mostRegions = follower.regions.size();
+        Random random = new Random(1);
+        for (int step = 0; step < 6000; step++) {
+            play(tileMatrix, random);
+            mostRegions = Math.max(mostRegions, follower.regions.size());
+        }
+        // A new RegionListener is given every label, including the labels of regions that are gone.
+        RegionFollower labels = new RegionFollower();
+        tileMatrix.setRegionListener(labels);
+        assertTrue(labels.labelCount + " labels for at most " + mostRegions + " regions",
+                labels.labelCount <= mostRegions + 1);
+    }
+
+    @Test
+    public void regionListenerFollowsTheRegions() {
+        TileMatrix tileMatrix = new TileMatrix(120, 90);
+        tileMatrix.initialize(InitializationAlgorithms.getDefaultAlgorithm(), 3);
+        RegionFollower follower = new RegionFollower();
+        tileMatrix.setRegionListener(follower);
+        Random random = new Random(1);
+        for (int step = 0; step < 3000; step++) {
+            play(tileMatrix, random);
+            IdentityHashMap<int[], Integer> regions = new IdentityHashMap<int[], Integer>();
+            for (int j = 0; j < 90; j++) {
+                for (int i = 0; i < 120; i++) {
+                    int[] members = tileMatrix.getSelectionIndices(i, j);
+                    if (members.length != 0 && !regions.containsKey(members)) {
+                        int population = 0;
+                        for (int member : members) {
+                            population += tileMatrix.getPopulation(member % 120, member / 120);
+                        }
+                        regions.put(members, population);
+                    }
+                }
+            }
+            // Not compared with equals, as IdentityHashMap also compares the boxed populations by identity.
+            assertEquals(regions.size(), follower.regions.size());
+            for (Map.Entry<int[], Integer> region : regions.entrySet()) {
+                assertEquals(region.getValue(), follower.regions.get(region.getKey()));
+            }
+        }
+    }
+
+    /**
+     * Makes a flood, an undo or a redo, mostly floods.
+     */
+    private static void play(TileMatrix tileMatrix, Random random) {
+        int move = random.nextInt(10);
+        if (move < 5 || !tileMatrix.canUndo() && !tileMatrix.canRedo()) {
+            tileMatrix.startFlood(random.nextInt(tileMatrix.getDimensions().width),
+                    random.nextInt(tileMatrix.getDimensions().height));
+        } else if (move < 9 && tileMatrix.canUndo()) {
+            tileMatrix.undo();
+        } else if (tileMatrix.canRedo()) {
+            tileMatrix.redo();
+        }
+    }
+
+    /**
+     * Keeps the members and the population of every region it is told about.
+     */
+    private static final class RegionFollower implements RegionListener {
+
+        private final IdentityHashMap<int[], Integer> regions = new IdentityHashMap<int[], Integer>();
+        private int labelCount;
+
+        @Override
+        public void regionsLabeled(TileMatrix source, List<int[]> labeledRegions, int[] populations) {
+            regions.clear();
+            labelCount = labeledRegions.size();
+            for (int label = 0; label < labeledRegions.size(); label++) {
+                if (labeledRegions.get(label) != null) {
+                    regions.put(labeledRegions.get(label), populations[label]);
+                }
+            }
+        }
+
+        @Override
+        public void regionAdded(TileMatrix source, int[] members, int population) {
+            assertNull("added twice", regions.put(members, population));
+        }
+
+        @Override
+        public void regionRemoved(TileMatrix source, int[] members) {
+            assertNotNull("removed but never added", regions.remove(members));
+        }
+
+    }
+
+}
@@ -0,0 +1,82 @@
+package org.flood;
+
+import org.flood.algorithms.InitializationAlgorithm;
+import org.flood.algorithms.InitializationAlgorithms;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests that undoing and redoing floods of a TileMatrix gives back the boards of a ReferenceBoard before and after them.
+ */
+public class UndoRedoTest {
+
+    @Test
+    public void undoAndRedoMatchTheReference() {
+        Random random = new Random(4);
+        for (InitializationAlgorithm initializationAlgorithm : InitializationAlgorithms.getInitializationAlgorithms()) {
+            for (int board = 0; board < 3; board++) {
+                int width = 5 + random.nextInt(36);
+                int height = 5 + random.nextInt(36);
+                TileMatrix tileMatrix = new TileMatrix(width, height);
+                tileMatrix.initialize(initializationAlgorithm, random.nextLong());
+                ReferenceBoard reference = new ReferenceBoard(tileMatrix);
+                // The boards before the floods that can be undone and after the floods that can be redone.
+                ArrayList<ReferenceBoard> undoBoards = new ArrayList<ReferenceBoard>();
+                ArrayList<ReferenceBoard> redoBoards = new ArrayList<ReferenceBoard>();
+                for (int move = 0; move < 150; move++) {
+                    int kind = random.nextInt(10);
+                    if (kind < 3 && tileMatrix.canUndo()) {
+                        tileMatrix.undo();
+                        redoBoards.add(reference);
+                        reference = undoBoards.remove(undoBoards.size() - 1);
+                    } else if (kind < 5 && tileMatrix.canRedo()) {
+                        tileMatrix.redo();
+                        undoBoards.add(reference);
+                        reference = redoBoards.remove(redoBoards.size() - 1);
+                    } else {
+                        int i = random.nextInt(width);
+                        int j = random.nextInt(height);
+                        // Even the floods that change nothing can be undone.
+                        tileMatrix.startFlood(i, j);
+                        undoBoards.add(reference.copy());
+                        reference.flood(i, j);
+                        redoBoards.clear();
+                    }
+                    reference.assertMatches(tileMatrix);
+                    assertEquals(!undoBoards.isEmpty(), tileMatrix.canUndo());
+                    assertEquals(!redoBoards.isEmpty(), tileMatrix.canRedo());
+                }
+            }
+        }
+    }
+
+    @Test
+    public void historyKeepsToItsBudget() {
+        TileMatrix tileMatrix = new TileMatrix(80, 60);
+        tileMatrix.initialize(InitializationAlgorithms.getDefaultAlgorithm(), 2);
+        Random random = new Random(6);
+        while (!tileMatrix.canUndo()) {
+            tileMatrix.startFlood(random.nextInt(80), random.nextInt(60));
+        }
+        tileMatrix.setHistoryBudget(0);
+        assertFalse(tileMatrix.canUndo());
+        ReferenceBoard reference = new ReferenceBoard(tileMatrix);
+        tileMatrix.setHistoryBudget(1 << 20);
+        for (int click = 0; click < 30; click++) {
+            tileMatrix.startFlood(random.nextInt(80), random.nextInt(60));
+        }
+        assertTrue(tileMatrix.canUndo());
+        while (tileMatrix.canUndo()) {
+            tileMatrix.undo();
+        }
+        // Every flood made after the history was dropped is undone, but none of the floods before it.
+        reference.assertMatches(tileMatrix);
+    }
+
+}